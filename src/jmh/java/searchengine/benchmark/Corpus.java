@@ -0,0 +1,36 @@
+package searchengine.benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * HTML-страницы корпуса для бенчмарков из ресурсов corpus/ (список файлов - corpus/index.txt).
+ */
+public class Corpus {
+
+    public static List<String> loadPages() {
+        List<String> pages = new ArrayList<>();
+        for (String name : readLines("corpus/index.txt")) {
+            pages.add(String.join("\n", readLines("corpus/" + name)));
+        }
+        return pages;
+    }
+
+    private static List<String> readLines(String resource) {
+        InputStream in = Corpus.class.getClassLoader().getResourceAsStream(resource);
+        if (in == null) {
+            throw new IllegalStateException("Ресурс не найден: " + resource);
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            return reader.lines().filter(line -> !line.isBlank()).toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package searchengine.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import searchengine.Application;
+import searchengine.repository.LemmaRepository;
+import searchengine.repository.PageRepository;
+import searchengine.service.ApiService;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Замер полной индексации: синтетический сайт {@link StubSite} обходится приложением с настоящей
+ * цепочкой ApiServiceImpl - PageFinder - PageIndexerServiceImpl и локальной PostgreSQL.
+ * База данных очищается перед обходом, поэтому нужна отдельная база (harness.db-url).
+ * <p>
+ * Параметры (системные свойства): harness.pages, harness.fan-out, harness.page-words,
+ * harness.db-url, harness.db-user, harness.db-password, harness.result.
+ * Результат: страниц и лемм в секунду, SQL-запросов на страницу, p50/p99 времени обработки
+ * страницы и её этапов, пиковый размер кучи; выводится в консоль и в JSON-файл.
+ */
+public class IndexingThroughputHarness {
+    private static final List<String> TIMERS =
+            List.of("crawler.page", "crawler.fetch", "crawler.parse", "indexer.lemmatize", "indexer.persist");
+
+    public static void main(String[] args) throws Exception {
+        int pageCount = Integer.getInteger("harness.pages", 2000);
+        int fanOut = Integer.getInteger("harness.fan-out", 10);
+        int pageWords = Integer.getInteger("harness.page-words", 500);
+        Path result = Paths.get(System.getProperty("harness.result", "target/indexing-harness.json"));
+        Path workDir = Files.createTempDirectory("indexing-harness");
+
+        try (StubSite site = new StubSite(pageCount, fanOut, pageWords);
+             ConfigurableApplicationContext context = new SpringApplicationBuilder(Application.class)
+                     .web(WebApplicationType.NONE)
+                     .run(getApplicationArgs(site, pageCount, workDir))) {
+            Statistics statistics = context.getBean(EntityManagerFactory.class)
+                    .unwrap(SessionFactory.class).getStatistics();
+            List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                    .filter(pool -> pool.getType() == MemoryType.HEAP)
+                    .toList();
+            heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+            statistics.clear();
+
+            long start = System.nanoTime();
+            context.getBean(ApiService.class).startIndexing(new AtomicBoolean(true), false);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            long pages = context.getBean(PageRepository.class).count();
+            long lemmas = context.getBean(LemmaRepository.class).count();
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("sitePages", pageCount);
+            report.put("fanOut", fanOut);
+            report.put("pageWords", pageWords);
+            report.put("seconds", seconds);
+            report.put("pages", pages);
+            report.put("lemmas", lemmas);
+            report.put("pagesPerSecond", pages / seconds);
+            report.put("lemmasPerSecond", lemmas / seconds);
+            report.put("statementsPerPage", pages > 0 ? (double) statistics.getPrepareStatementCount() / pages : 0.0);
+            report.put("peakHeapMb", heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum() / (1024.0 * 1024));
+            report.put("latencyMillis", getLatencies(context.getBean(MeterRegistry.class)));
+
+            ObjectMapper mapper = new ObjectMapper();
+            String json = mapper.writerWithDefaultPrettyPrinter().writeValueAsString(report);
+            Files.createDirectories(result.toAbsolutePath().getParent());
+            Files.writeString(result, json);
+            System.out.println(json);
+        }
+    }
+
+    //Аргументы командной строки имеют приоритет над application.yml, в том числе для списка сайтов
+    private static String[] getApplicationArgs(StubSite site, int pageCount, Path workDir) {
+        String percentiles = "0.5,0.99";
+        List<String> args = new ArrayList<>(List.of(
+                "--indexing-settings.sites[0].url=" + site.getUrl(),
+                "--indexing-settings.sites[0].name=Синтетический сайт",
+                "--indexing-settings.sites[0].maxPages=" + pageCount,
+                "--indexing-settings.sites[0].maxDepth=" + pageCount,
+                "--spring.datasource.url=" + System.getProperty("harness.db-url",
+                        "jdbc:postgresql://localhost:5430/searchengine_bench?reWriteBatchedInserts=true"),
+                "--spring.datasource.username=" + System.getProperty("harness.db-user", "usr"),
+                "--spring.datasource.password=" + System.getProperty("harness.db-password", "pwd"),
+                "--spring.jpa.properties.hibernate.generate_statistics=true",
+                "--crawler-settings.frontier-path=" + workDir.resolve("frontier"),
+                "--segment-settings.path=" + workDir.resolve("segments"),
+                "--logging.level.searchengine=WARN",
+                "--logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN"));
+        for (String timer : TIMERS) {
+            args.add("--management.metrics.distribution.percentiles." + timer + "=" + percentiles);
+        }
+        return args.toArray(String[]::new);
+    }
+
+    //p50 и p99 по каждому таймеру; у crawler.fetch таймеры по кодам ответа объединяются по наибольшему
+    private static Map<String, Map<String, Double>> getLatencies(MeterRegistry registry) {
+        Map<String, Map<String, Double>> latencies = new LinkedHashMap<>();
+        for (String name : TIMERS) {
+            Map<String, Double> values = new LinkedHashMap<>();
+            for (Timer timer : registry.find(name).timers()) {
+                HistogramSnapshot snapshot = timer.takeSnapshot();
+                for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+                    String key = "p" + Math.round(percentile.percentile() * 100);
+                    values.merge(key, percentile.value(TimeUnit.MILLISECONDS), Math::max);
+                }
+                values.merge("count", (double) snapshot.count(), Double::sum);
+            }
+            latencies.put(name, values);
+        }
+        return latencies;
+    }
+}
@@ -0,0 +1,72 @@
+package searchengine.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.jsoup.Jsoup;
+import org.openjdk.jmh.annotations.*;
+import searchengine.service.impl.LemmaServiceImpl;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Лемматизация страниц корпуса. getLemmaByWord измеряется на словах корпуса при заполненном кэше лемм,
+ * lemmatizeTextAllThreads показывает масштабирование общей морфологии по потокам.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LemmaBenchmark {
+    private LemmaServiceImpl lemmaService;
+    private List<String> pages;
+    private List<String> texts;
+    private String[] words;
+    private int next;
+
+    @Setup
+    public void setup() {
+        lemmaService = new LemmaServiceImpl(new SimpleMeterRegistry());
+        pages = Corpus.loadPages();
+        texts = pages.stream().map(html -> Jsoup.parse(html).text()).toList();
+        words = texts.stream()
+                .flatMap(text -> Arrays.stream(text.split("[^\\p{L}]+")))
+                .filter(word -> !word.isEmpty())
+                .toArray(String[]::new);
+        texts.forEach(lemmaService::getLemmasFromPlainText);
+    }
+
+    @Benchmark
+    public Map<String, Integer> getLemmasFromText() {
+        return lemmaService.getLemmasFromText(pages.get(nextIndex(pages.size())));
+    }
+
+    @Benchmark
+    public String getLemmaByWord() {
+        return lemmaService.getLemmaByWord(words[nextIndex(words.length)]);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Map<String, List<Integer>> lemmatizeTextAllThreads(ThreadState state) {
+        return lemmaService.getLemmaPositions(texts.get(state.nextIndex(texts.size())));
+    }
+
+    private int nextIndex(int size) {
+        next = next + 1 < size ? next + 1 : 0;
+        return next;
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        private int next;
+
+        private int nextIndex(int size) {
+            next = next + 1 < size ? next + 1 : 0;
+            return next;
+        }
+    }
+}
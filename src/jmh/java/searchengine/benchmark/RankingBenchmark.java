@@ -0,0 +1,63 @@
+package searchengine.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import searchengine.util.PositionCodec;
+import searchengine.util.Proximity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Учёт позиций слов при ранжировании: декодирование позиций лемм страницы и надбавка за близость
+ * слов запроса. Одна операция - одна страница.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RankingBenchmark {
+    private static final int PAGE_COUNT = 256;
+    private static final double PROXIMITY_WEIGHT = 0.5;
+
+    @Param({"2", "4"})
+    public int lemmaCount;
+
+    @Param({"10", "200"})
+    public int occurrences;
+
+    private List<List<byte[]>> pages;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        pages = new ArrayList<>();
+        for (int page = 0; page < PAGE_COUNT; page++) {
+            List<byte[]> lemmas = new ArrayList<>();
+            for (int lemma = 0; lemma < lemmaCount; lemma++) {
+                List<Integer> positions = new ArrayList<>();
+                int position = 0;
+                for (int i = 0; i < occurrences; i++) {
+                    position += 1 + random.nextInt(50);
+                    positions.add(position);
+                }
+                lemmas.add(PositionCodec.encode(positions));
+            }
+            pages.add(lemmas);
+        }
+    }
+
+    @Benchmark
+    public double proximityBoost() {
+        next = (next + 1) % PAGE_COUNT;
+        List<int[]> positions = new ArrayList<>(lemmaCount);
+        for (byte[] encoded : pages.get(next)) {
+            positions.add(PositionCodec.decode(encoded));
+        }
+        return Proximity.getBoost(positions, PROXIMITY_WEIGHT);
+    }
+}
@@ -0,0 +1,236 @@
+package searchengine.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Нагрузочный замер /api/search на запущенном приложении с готовым индексом. Запросы журнала
+ * отправляются по кругу с постоянной частотой harness.rate в секунду не более чем harness.users
+ * одновременными клиентами. Время ответа считается от запланированного момента отправки, поэтому
+ * ожидание свободного клиента при перегрузке входит в задержку.
+ * <p>
+ * Параметры (системные свойства): harness.url, harness.queries (файл журнала, по умолчанию
+ * queries.tsv из ресурсов), harness.site, harness.rate, harness.users, harness.duration-seconds,
+ * harness.result. Этапы поиска берутся из гистограмм search.phase приложения (/actuator/prometheus)
+ * как разность до и после замера.
+ */
+public class SearchLoadHarness {
+    private static final Pattern LABEL = Pattern.compile("(\\w+)=\"([^\"]*)\"");
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99};
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = System.getProperty("harness.url", "http://localhost:8080");
+        String site = System.getProperty("harness.site", "");
+        int rate = Integer.getInteger("harness.rate", 20);
+        int users = Integer.getInteger("harness.users", 8);
+        int durationSeconds = Integer.getInteger("harness.duration-seconds", 60);
+        Path result = Paths.get(System.getProperty("harness.result", "target/search-harness.json"));
+        List<QueryLogEntry> queries = readQueries(System.getProperty("harness.queries"), site);
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        Map<String, PhaseHistogram> phasesBefore = scrapePhases(client, baseUrl);
+
+        ExecutorService usersPool = Executors.newFixedThreadPool(users);
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        Map<String, List<Double>> latencies = new ConcurrentHashMap<>();
+        Map<String, Integer> statuses = new ConcurrentSkipListMap<>();
+        long periodNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long total = (long) rate * durationSeconds;
+        long start = System.nanoTime();
+        CountDownLatch done = new CountDownLatch((int) total);
+        for (long i = 0; i < total; i++) {
+            QueryLogEntry query = queries.get((int) (i % queries.size()));
+            long scheduled = start + i * periodNanos;
+            scheduler.schedule(() -> usersPool.submit(() -> {
+                int status = send(client, baseUrl, query);
+                double millis = (System.nanoTime() - scheduled) / 1e6;
+                statuses.merge(String.valueOf(status), 1, Integer::sum);
+                for (String group : query.groups()) {
+                    latencies.computeIfAbsent(group, key -> Collections.synchronizedList(new ArrayList<>())).add(millis);
+                }
+                done.countDown();
+            }), scheduled - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+        done.await();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        scheduler.shutdown();
+        usersPool.shutdown();
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("rate", rate);
+        report.put("users", users);
+        report.put("requests", total);
+        report.put("throughput", total / seconds);
+        report.put("statuses", statuses);
+        Map<String, Object> latencyReport = new LinkedHashMap<>();
+        new TreeMap<>(latencies).forEach((group, values) -> latencyReport.put(group, summarize(values)));
+        report.put("latencyMillis", latencyReport);
+        Map<String, Object> phaseReport = new LinkedHashMap<>();
+        scrapePhases(client, baseUrl).forEach((phase, after) ->
+                phaseReport.put(phase, after.minus(phasesBefore.get(phase)).summarize()));
+        report.put("phaseMillis", phaseReport);
+
+        String json = new ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsString(report);
+        Files.createDirectories(result.toAbsolutePath().getParent());
+        Files.writeString(result, json);
+        System.out.println(json);
+    }
+
+    private static int send(HttpClient client, String baseUrl, QueryLogEntry query) {
+        StringBuilder url = new StringBuilder(baseUrl).append("/api/search?query=")
+                .append(URLEncoder.encode(query.query(), StandardCharsets.UTF_8))
+                .append("&offset=").append(query.offset())
+                .append("&limit=").append(query.limit());
+        if (!query.site().isEmpty()) {
+            url.append("&site=").append(URLEncoder.encode(query.site(), StandardCharsets.UTF_8));
+        }
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(url.toString()))
+                    .timeout(Duration.ofSeconds(30))
+                    .GET()
+                    .build();
+            return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        } catch (IOException ex) {
+            return -1;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+    }
+
+    private static List<QueryLogEntry> readQueries(String file, String site) throws IOException {
+        InputStream in = file != null
+                ? Files.newInputStream(Paths.get(file))
+                : SearchLoadHarness.class.getClassLoader().getResourceAsStream("queries.tsv");
+        if (in == null) {
+            throw new IllegalStateException("Журнал запросов не найден");
+        }
+        List<QueryLogEntry> queries = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\t", -1);
+                String querySite = fields.length > 1 ? fields[1].replace("{site}", site) : "";
+                int offset = fields.length > 2 && !fields[2].isBlank() ? Integer.parseInt(fields[2].trim()) : 0;
+                int limit = fields.length > 3 && !fields[3].isBlank() ? Integer.parseInt(fields[3].trim()) : 10;
+                queries.add(new QueryLogEntry(fields[0], querySite, offset, limit));
+            }
+        }
+        if (queries.isEmpty()) {
+            throw new IllegalStateException("Журнал запросов пуст");
+        }
+        return queries;
+    }
+
+    private static Map<String, Object> summarize(List<Double> values) {
+        double[] sorted = values.stream().mapToDouble(Double::doubleValue).sorted().toArray();
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("count", sorted.length);
+        for (double percentile : PERCENTILES) {
+            int index = (int) Math.ceil(percentile * sorted.length) - 1;
+            summary.put("p" + Math.round(percentile * 100), sorted[Math.max(index, 0)]);
+        }
+        summary.put("max", sorted[sorted.length - 1]);
+        return summary;
+    }
+
+    //Гистограммы search_phase_seconds из ответа /actuator/prometheus
+    private static Map<String, PhaseHistogram> scrapePhases(HttpClient client, String baseUrl)
+            throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/actuator/prometheus")).GET().build();
+        String body = client.send(request, HttpResponse.BodyHandlers.ofString()).body();
+        Map<String, PhaseHistogram> phases = new TreeMap<>();
+        for (String line : body.split("\n")) {
+            if (!line.startsWith("search_phase_seconds")) {
+                continue;
+            }
+            Map<String, String> labels = new HashMap<>();
+            Matcher matcher = LABEL.matcher(line);
+            while (matcher.find()) {
+                labels.put(matcher.group(1), matcher.group(2));
+            }
+            String phase = labels.get("phase");
+            if (phase == null) {
+                continue;
+            }
+            double value = Double.parseDouble(line.substring(line.lastIndexOf(' ') + 1));
+            PhaseHistogram histogram = phases.computeIfAbsent(phase, key -> new PhaseHistogram());
+            if (line.startsWith("search_phase_seconds_bucket") && !labels.get("le").equals("+Inf")) {
+                histogram.buckets.put(Double.parseDouble(labels.get("le")), value);
+            } else if (line.startsWith("search_phase_seconds_count")) {
+                histogram.count = value;
+            } else if (line.startsWith("search_phase_seconds_sum")) {
+                histogram.sum = value;
+            }
+        }
+        return phases;
+    }
+
+    private record QueryLogEntry(String query, String site, int offset, int limit) {
+        //Группы, по которым считается задержка запроса
+        private List<String> groups() {
+            List<String> groups = new ArrayList<>(List.of("all", site.isEmpty() ? "allSites" : "oneSite"));
+            if (offset > 0) {
+                groups.add("nextPage");
+            }
+            return groups;
+        }
+    }
+
+    //Накопленные значения гистограммы: верхняя граница корзины в секундах - число измерений
+    private static class PhaseHistogram {
+        private final TreeMap<Double, Double> buckets = new TreeMap<>();
+        private double count;
+        private double sum;
+
+        private PhaseHistogram minus(PhaseHistogram before) {
+            PhaseHistogram delta = new PhaseHistogram();
+            delta.count = count - (before != null ? before.count : 0);
+            delta.sum = sum - (before != null ? before.sum : 0);
+            buckets.forEach((le, value) -> delta.buckets.put(le,
+                    value - (before != null ? before.buckets.getOrDefault(le, 0.0) : 0)));
+            return delta;
+        }
+
+        //Среднее и перцентили с точностью до границы корзины гистограммы
+        private Map<String, Object> summarize() {
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("count", (long) count);
+            summary.put("mean", count > 0 ? sum / count * 1000 : 0.0);
+            for (double percentile : PERCENTILES) {
+                double target = percentile * count;
+                Double bound = buckets.entrySet().stream()
+                        .filter(bucket -> bucket.getValue() >= target && count > 0)
+                        .map(Map.Entry::getKey)
+                        .findFirst()
+                        .orElse(null);
+                summary.put("p" + Math.round(percentile * 100), bound != null ? bound * 1000 : null);
+            }
+            return summary;
+        }
+    }
+}
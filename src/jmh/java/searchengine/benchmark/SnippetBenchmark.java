@@ -0,0 +1,62 @@
+package searchengine.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+import org.openjdk.jmh.annotations.*;
+import searchengine.service.impl.LemmaServiceImpl;
+import searchengine.util.SnippetExtractor;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Построение сниппетов по предложениям и страницам корпуса для запроса из нескольких слов.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SnippetBenchmark {
+    private static final String QUERY = "русская литература и история монастыря в городе";
+
+    private List<List<String>> pages;
+    private List<String> sentences;
+    private SnippetExtractor snippetExtractor;
+    private int next;
+    private int nextPage;
+
+    @Setup
+    public void setup() {
+        LemmaServiceImpl lemmaService = new LemmaServiceImpl(new SimpleMeterRegistry());
+        pages = Corpus.loadPages().stream()
+                .map(html -> Jsoup.parse(html).body()
+                        .getElementsMatchingOwnText("[\\p{IsCyrillic}\\p{IsLatin}]").stream()
+                        .map(Element::text)
+                        .toList())
+                .toList();
+        sentences = pages.stream().flatMap(List::stream).toList();
+        Set<String> lemmas = lemmaService.getLemmasFromPlainText(QUERY).keySet();
+        snippetExtractor = new SnippetExtractor(lemmas, lemmaService::getLemmaByWord, 200);
+    }
+
+    //Сниппет одного предложения корпуса за операцию: с -prof gc показатель gc.alloc.rate.norm
+    //даёт число байт, выделяемых на один сниппет
+    @Benchmark
+    public String extractSnippet() {
+        String sentence = sentences.get(next);
+        next = next + 1 == sentences.size() ? 0 : next + 1;
+        return snippetExtractor.extract(sentence).getSnippet();
+    }
+
+    //Лучший фрагмент одной страницы корпуса за операцию
+    @Benchmark
+    public String extractPageSnippet() {
+        List<String> page = pages.get(nextPage);
+        nextPage = nextPage + 1 == pages.size() ? 0 : nextPage + 1;
+        return snippetExtractor.extractBest(page).getSnippet();
+    }
+}
@@ -0,0 +1,118 @@
+package searchengine.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Синтетический сайт на локальном HTTP-сервере для нагрузочных замеров обхода. Страницы
+ * /page/{n} образуют дерево: у страницы n дочерние страницы n * fanOut + 1 ... n * fanOut + fanOut,
+ * а также две случайные ссылки на другие страницы. Текст страниц - русские предложения из
+ * фиксированного словаря, одинаковые при каждом запуске. robots.txt и sitemap.xml отсутствуют.
+ */
+public class StubSite implements AutoCloseable {
+    private static final String[] WORDS = (
+            "город библиотека читатель книга история литература писатель роман повесть сказка " +
+            "музей собор монастырь храм улица площадь набережная река озеро лес поле дорога " +
+            "поезд автобус путешествие маршрут гостиница экскурсия праздник выставка концерт " +
+            "театр спектакль актёр зритель школа ученик учитель урок университет студент лекция " +
+            "наука исследование учёный открытие лаборатория эксперимент результат метод задача " +
+            "программа компьютер сервер данные система сеть запрос ответ поиск индекс страница " +
+            "сайт ссылка новость статья журнал газета редакция автор читать писать говорить " +
+            "рассказывать показывать строить работать учиться путешествовать открывать находить " +
+            "новый старый большой маленький красивый интересный важный известный русский " +
+            "городской весенний осенний зимний летний быстро медленно сегодня вчера завтра " +
+            "всегда часто иногда вместе далеко близко рядом около после перед через между"
+    ).split(" ");
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final int pageCount;
+    private final int fanOut;
+    private final int pageWords;
+
+    public StubSite(int pageCount, int fanOut, int pageWords) throws IOException {
+        this.pageCount = pageCount;
+        this.fanOut = fanOut;
+        this.pageWords = pageWords;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int page = getPageNumber(exchange.getRequestURI().getPath());
+        byte[] body = page >= 0
+                ? renderPage(page).getBytes(StandardCharsets.UTF_8)
+                : "Not found".getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type",
+                page >= 0 ? "text/html; charset=UTF-8" : "text/plain; charset=UTF-8");
+        exchange.sendResponseHeaders(page >= 0 ? 200 : 404, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    //Номер страницы по пути или -1, если такой страницы нет
+    private int getPageNumber(String path) {
+        if (path.equals("/")) {
+            return 0;
+        }
+        if (!path.startsWith("/page/")) {
+            return -1;
+        }
+        try {
+            int page = Integer.parseInt(path.substring("/page/".length()));
+            return page > 0 && page < pageCount ? page : -1;
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    private String renderPage(int page) {
+        Random random = new Random(page);
+        StringBuilder html = new StringBuilder(pageWords * 12 + 512);
+        html.append("<!DOCTYPE html><html lang=\"ru\"><head><meta charset=\"UTF-8\"><title>Страница ")
+                .append(page).append("</title></head><body><nav><a href=\"/\">Главная</a>");
+        for (int child = page * fanOut + 1; child <= page * fanOut + fanOut && child < pageCount; child++) {
+            html.append(" <a href=\"/page/").append(child).append("\">Раздел ").append(child).append("</a>");
+        }
+        for (int i = 0; i < 2 && pageCount > 1; i++) {
+            html.append(" <a href=\"/page/").append(1 + random.nextInt(pageCount - 1)).append("\">Ещё</a>");
+        }
+        html.append("</nav><main><h1>Страница ").append(page).append("</h1><p>");
+        for (int word = 0; word < pageWords; word++) {
+            html.append(WORDS[random.nextInt(WORDS.length)]);
+            if (word % 12 == 11) {
+                html.append(". ");
+                if (word % 96 == 95) {
+                    html.append("</p><p>");
+                }
+            } else {
+                html.append(' ');
+            }
+        }
+        html.append("</p></main></body></html>");
+        return html.toString();
+    }
+}
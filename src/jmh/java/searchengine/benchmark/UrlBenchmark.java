@@ -0,0 +1,60 @@
+package searchengine.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import searchengine.util.UrlCanonicalizer;
+import searchengine.util.UrlValidator;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Проверка и канонизация ссылок, найденных на страницах сайта.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UrlBenchmark {
+    private static final String SITE_URL = "https://www.example.ru/";
+    private static final int URL_COUNT = 1024;
+
+    private String[] urls;
+    private UrlCanonicalizer canonicalizer;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        String[] templates = {
+                SITE_URL + "news/%d/",
+                SITE_URL + "catalog/item-%d?utm_source=mail&page=2",
+                SITE_URL + "files/report-%d.pdf",
+                "https://other.example.com/page/%d",
+                SITE_URL + "events/%d#schedule",
+                "/relative/path/%d/../index"
+        };
+        urls = new String[URL_COUNT];
+        for (int i = 0; i < URL_COUNT; i++) {
+            urls[i] = String.format(templates[random.nextInt(templates.length)], random.nextInt(100_000));
+        }
+        canonicalizer = new UrlCanonicalizer(SITE_URL, List.of("utm_*", "gclid"));
+    }
+
+    @Benchmark
+    public boolean isInternalUrl() {
+        return UrlValidator.isInternalUrl(urls[nextIndex()], SITE_URL);
+    }
+
+    @Benchmark
+    public String canonicalize() {
+        return canonicalizer.canonicalize(urls[nextIndex()]);
+    }
+
+    private int nextIndex() {
+        next = (next + 1) & (URL_COUNT - 1);
+        return next;
+    }
+}
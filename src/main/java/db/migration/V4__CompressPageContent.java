@@ -0,0 +1,50 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import searchengine.util.ContentCompressor;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Переносит HTML из столбца page.content в таблицу page_content в сжатом виде
+ * и удаляет столбец. Строки читаются курсором порциями, чтобы не держать
+ * содержимое всех страниц в памяти.
+ */
+public class V4__CompressPageContent extends BaseJavaMigration {
+    private static final int FETCH_SIZE = 100;
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        try (Statement select = connection.createStatement();
+             PreparedStatement insert = connection.prepareStatement(
+                     "INSERT INTO page_content (page_id, content, content_length) VALUES (?, ?, ?) " +
+                             "ON CONFLICT (page_id) DO NOTHING")) {
+            select.setFetchSize(FETCH_SIZE);
+            int batchSize = 0;
+            try (ResultSet rs = select.executeQuery("SELECT id, content FROM page WHERE content <> ''")) {
+                while (rs.next()) {
+                    String html = rs.getString("content");
+                    insert.setInt(1, rs.getInt("id"));
+                    insert.setBytes(2, ContentCompressor.compress(html));
+                    insert.setInt(3, html.length());
+                    insert.addBatch();
+                    if (++batchSize == FETCH_SIZE) {
+                        insert.executeBatch();
+                        batchSize = 0;
+                    }
+                }
+            }
+            if (batchSize > 0) {
+                insert.executeBatch();
+            }
+        }
+        try (Statement alter = connection.createStatement()) {
+            alter.execute("ALTER TABLE page DROP COLUMN content");
+        }
+    }
+}
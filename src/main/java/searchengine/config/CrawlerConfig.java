@@ -0,0 +1,29 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "crawler-settings")
+public class CrawlerConfig {
+    private int threads = Runtime.getRuntime().availableProcessors();
+    //Одновременных запросов к одному сайту
+    private int maxConnectionsPerSite = 8;
+    private int maxBodySize = 10 * 1024 * 1024;
+    //Максимальный размер sitemap в байтах, для сжатых - после распаковки (предел протокола sitemap - 50 МБ)
+    private int maxSitemapSize = 50 * 1024 * 1024;
+    //Максимальная длина видимого текста страницы, передаваемого в лемматизацию
+    private int maxTextLength = 1_000_000;
+    //Параметры запроса, удаляемые из ссылок перед обходом; "utm_*" - все параметры с префиксом utm_
+    private List<String> strippedQueryParams = List.of("utm_*", "gclid", "fbclid", "yclid", "ysclid", "_openstat");
+    private String frontierPath = "frontier";
+    private int checkpointIntervalSeconds = 30;
+    //Как часто подписчикам /api/indexingProgress отправляется ход обхода
+    private long progressIntervalMillis = 1000;
+}
@@ -0,0 +1,24 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "duplicate-settings")
+public class DuplicateConfig {
+    private boolean enabled = true;
+    //SKIP - почти дубликаты не индексируются, COLLAPSE - индексируются и схлопываются в выдаче
+    private Mode mode = Mode.SKIP;
+    //Максимальное расстояние Хэмминга между отпечатками SimHash (не больше 3)
+    private int maxDistance = 3;
+    //Страницы с меньшим числом лемм не проверяются: у коротких текстов отпечатки слишком часто совпадают
+    private int minLemmas = 20;
+
+    public enum Mode {
+        SKIP, COLLAPSE
+    }
+}
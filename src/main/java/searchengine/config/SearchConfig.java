@@ -0,0 +1,26 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "search-settings")
+public class SearchConfig {
+    //Потоков параллельного поиска по сайтам
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int queueCapacity = 64;
+    //Время ответа при поиске по всем сайтам, после которого возвращаются результаты успевших сайтов
+    private long timeoutMillis = 3000;
+    private int maxResultsPerSite = 500;
+    //Запросов, результаты которых хранятся для постраничного вывода
+    private int cacheSize = 100;
+    //Потоков и очередь поисковых запросов; запросы сверх очереди получают 503
+    private int requestThreads = 4;
+    private int requestQueueCapacity = 32;
+    //Срок выполнения поискового запроса, после которого поиск прерывается и возвращается 503
+    private long requestTimeoutMillis = 10000;
+}
@@ -10,4 +10,7 @@ import java.net.URL;
 public class SiteConfig {
     private URL url;
     private String name;
+    //Бюджет обхода: сколько страниц сайта загрузить и на какую глубину ссылок от главной
+    private int maxPages = 50_000;
+    private int maxDepth = 20;
 }
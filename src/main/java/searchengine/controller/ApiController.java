@@ -3,20 +3,27 @@ package searchengine.controller;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import searchengine.config.ListSiteConfig;
 import searchengine.dto.response.IndexingResponse;
 import searchengine.dto.response.NotOkResponse;
 import searchengine.dto.response.OkResponse;
+import searchengine.dto.response.SuggestResponse;
 import searchengine.dto.statistic.StatisticsResponse;
 import searchengine.service.ApiService;
-import searchengine.service.SearchService;
+import searchengine.service.IndexingProgressService;
+import searchengine.service.SearchRequestService;
 import searchengine.service.StatisticsService;
+import searchengine.service.SuggestService;
 
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -26,26 +33,35 @@ import java.util.concurrent.atomic.AtomicBoolean;
 @RequestMapping("/api")
 @RequiredArgsConstructor
 public class ApiController {
-    private final SearchService searchService;
+    private static final String SMILE_VALUE = "application/x-jackson-smile";
+
+    private final SearchRequestService searchRequestService;
     private final StatisticsService statisticsService;
     private final ApiService apiService;
+    private final SuggestService suggestService;
+    private final IndexingProgressService indexingProgressService;
     private final AtomicBoolean indexingProcessing = new AtomicBoolean(false);
     private final ListSiteConfig sitesList;
     private final ExecutorService executor = Executors.newSingleThreadExecutor();
 
     @GetMapping("/statistics")
     public ResponseEntity<StatisticsResponse> statistics() throws MalformedURLException {
-        return ResponseEntity.ok(statisticsService.getStatistics());
+        return ResponseEntity.ok(statisticsService.getStatistics(indexingProcessing.get()));
+    }
+
+    @GetMapping(value = "/indexingProgress", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter indexingProgress() {
+        return indexingProgressService.subscribe();
     }
 
     @GetMapping("/startIndexing")
-    public ResponseEntity startIndexing() {
+    public ResponseEntity startIndexing(@RequestParam(defaultValue = "false") boolean resume) {
         if (indexingProcessing.get()) {
             return ResponseEntity.status(HttpStatus.CONFLICT).body(new NotOkResponse("Индексация уже запущена"));
         } else {
             executor.submit(() -> {
                 indexingProcessing.set(true);
-                apiService.startIndexing(indexingProcessing);
+                apiService.startIndexing(indexingProcessing, resume);
             });
             return ResponseEntity.status(HttpStatus.OK).body(new OkResponse());
         }
@@ -74,16 +90,29 @@ public class ApiController {
         return new ResponseEntity<>(new OkResponse(), HttpStatus.OK);
     }
 
-    @GetMapping("/search")
-    public ResponseEntity<Object> search(
+    //JSON по умолчанию или Smile по заголовку Accept
+    @GetMapping(value = "/search", produces = {MediaType.APPLICATION_JSON_VALUE, SMILE_VALUE})
+    public CompletableFuture<ResponseEntity<Object>> search(
             @RequestParam(required = false) String query,
             @RequestParam(required = false) String site,
-            @RequestParam(required = false) Integer offset,
-            @RequestParam(required = false) Integer limit
-    ) throws IOException {
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(defaultValue = "20") int limit
+    ) {
+        if (query == null || query.isBlank()) {
+            return CompletableFuture.completedFuture(
+                    ResponseEntity.badRequest().body(new NotOkResponse("Задан пустой поисковый запрос")));
+        }
+        return searchRequestService.submit(query, site, offset, limit);
+    }
+
+    @GetMapping("/suggest")
+    public ResponseEntity<SuggestResponse> suggest(
+            @RequestParam(required = false) String query,
+            @RequestParam(defaultValue = "10") int limit
+    ) {
         if (query == null || query.isBlank()) {
-            return ResponseEntity.badRequest().body(new NotOkResponse("Задан пустой поисковый запрос"));
+            return ResponseEntity.ok(new SuggestResponse(true, List.of()));
         }
-        return searchService.search(query, site, offset, limit);
+        return ResponseEntity.ok(new SuggestResponse(true, suggestService.suggest(query, limit)));
     }
 }
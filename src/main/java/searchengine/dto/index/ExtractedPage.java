@@ -0,0 +1,18 @@
+package searchengine.dto.index;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Set;
+
+@Getter
+@AllArgsConstructor
+public class ExtractedPage {
+    private final String title;
+    //Видимый текст страницы, блоки разделены переводом строки
+    private final String text;
+    //Абсолютные адреса ссылок a[href]
+    private final Set<String> links;
+    //Текст обрезан по лимиту длины
+    private final boolean truncated;
+}
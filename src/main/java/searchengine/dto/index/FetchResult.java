@@ -0,0 +1,18 @@
+package searchengine.dto.index;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class FetchResult {
+    private final int statusCode;
+    //Адрес после перенаправлений
+    private final String url;
+    private final String contentType;
+    //Распакованное тело ответа; пустое, если ответ не 200 или не HTML
+    private final byte[] body;
+    //Кодировка из Content-Type или null, если её нужно определить по содержимому
+    private final String charset;
+    private final boolean truncated;
+}
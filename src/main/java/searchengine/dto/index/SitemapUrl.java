@@ -0,0 +1,17 @@
+package searchengine.dto.index;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.Instant;
+
+@Getter
+@ToString
+@AllArgsConstructor
+public class SitemapUrl {
+    private final String loc;
+    //null, если lastmod не указан в sitemap
+    private final Instant lastModified;
+    private final double priority;
+}
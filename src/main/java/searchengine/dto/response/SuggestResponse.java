@@ -0,0 +1,13 @@
+package searchengine.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+public class SuggestResponse {
+    private final Boolean result;
+    private final List<String> data;
+}
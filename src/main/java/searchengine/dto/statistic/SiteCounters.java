@@ -0,0 +1,16 @@
+package searchengine.dto.statistic;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Снимок счётчиков сайта: число страниц и лемм и скорость их прироста за последние секунды.
+ */
+@Getter
+@AllArgsConstructor
+public class SiteCounters {
+    private final int pages;
+    private final int lemmas;
+    private final double pagesPerSecond;
+    private final double lemmasPerSecond;
+}
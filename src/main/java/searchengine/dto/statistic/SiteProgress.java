@@ -0,0 +1,15 @@
+package searchengine.dto.statistic;
+
+import lombok.Data;
+
+@Data
+public class SiteProgress {
+    private String url;
+    private String name;
+    private String status;
+    private long statusTime;
+    private String error;
+    private int pagesFetched;
+    private int queueSize;
+    private int errors;
+}
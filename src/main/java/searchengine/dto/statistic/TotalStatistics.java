@@ -7,5 +7,7 @@ public class TotalStatistics {
     private int sites;
     private int pages;
     private int lemmas;
+    private double pagesPerSecond;
+    private double lemmasPerSecond;
     private boolean indexing;
 }
@@ -16,7 +16,8 @@ import lombok.Setter;
 public class Index {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "search_index_seq")
+    @SequenceGenerator(name = "search_index_seq", sequenceName = "search_index_id_seq", allocationSize = 50)
     private Integer id;
 
     @NotNull
@@ -33,6 +34,10 @@ public class Index {
     @Column(name = "rank_value", nullable = false)
     private Integer rank;
 
+    //Позиции леммы на странице, закодированные PositionCodec
+    @Column(name = "positions")
+    private byte[] positions;
+
     public Index(Page page, Lemma lemma, Integer rank) {
         this.page = page;
         this.lemma = lemma;
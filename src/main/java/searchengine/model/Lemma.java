@@ -21,7 +21,8 @@ import java.util.List;
 public class Lemma implements Comparable<Lemma> {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "lemma_seq")
+    @SequenceGenerator(name = "lemma_seq", sequenceName = "lemma_id_seq", allocationSize = 50)
     private Integer id;
 
     @NotNull
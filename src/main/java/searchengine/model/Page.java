@@ -18,11 +18,12 @@ import java.util.Objects;
 @Getter
 @Setter
 @EqualsAndHashCode(of = {"path", "site"})
-@ToString(exclude = {"pageContent", "indices"})
+@ToString(exclude = {"pageContent", "pageText", "indices"})
 public class Page implements Comparable<Page> {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "page_seq")
+    @SequenceGenerator(name = "page_seq", sequenceName = "page_id_seq", allocationSize = 50)
     private Integer id;
 
     @NotNull
@@ -38,11 +39,23 @@ public class Page implements Comparable<Page> {
     @Column(name = "response_code", nullable = false)
     private Integer answerCode;
 
-    @Lob
-    @NotNull
-    @Column(name = "content", nullable = false)
+    //SimHash лемм страницы (см. DuplicateService)
+    @Column(name = "simhash")
+    private Long simHash;
+
+    //id страницы-оригинала, если страница - почти дубликат
+    @Column(name = "duplicate_of")
+    private Integer duplicateOf;
+
+    //HTML страницы хранится сжатым в таблице page_content (см. PageContent) и в сущности
+    //присутствует только на время обхода и индексации страницы
+    @Transient
     private String pageContent;
 
+    //Видимый текст, извлечённый при обходе; если его нет, текст получается разбором pageContent
+    @Transient
+    private String pageText;
+
     @OneToMany(mappedBy = "page", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
     private List<Index> indices = new ArrayList<>();
 
@@ -0,0 +1,70 @@
+package searchengine.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import org.springframework.data.domain.Persistable;
+import searchengine.util.ContentCompressor;
+
+@Entity
+@Table(name = "page_content")
+@NoArgsConstructor
+@Getter
+@Setter
+@ToString(exclude = {"content"})
+public class PageContent implements Persistable<Integer> {
+
+    @Id
+    @Column(name = "page_id")
+    private Integer pageId;
+
+    //HTML страницы, сжатый Deflate
+    @NotNull
+    @Column(name = "content", nullable = false)
+    private byte[] content;
+
+    @NotNull
+    @Column(name = "content_length", nullable = false)
+    private Integer contentLength;
+
+    //id назначается по странице, поэтому новизну строки нельзя определить по id: без этого признака
+    //save() выполнял бы merge() с SELECT перед каждым INSERT
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private boolean newContent = true;
+
+    public PageContent(Integer pageId, String html) {
+        this.pageId = pageId;
+        setHtml(html);
+    }
+
+    public String getHtml() {
+        return ContentCompressor.decompress(content);
+    }
+
+    public void setHtml(String html) {
+        this.content = ContentCompressor.compress(html);
+        this.contentLength = html.length();
+    }
+
+    @Override
+    public Integer getId() {
+        return pageId;
+    }
+
+    @Override
+    public boolean isNew() {
+        return newContent;
+    }
+
+    @PostLoad
+    @PostPersist
+    private void markNotNew() {
+        newContent = false;
+    }
+}
@@ -25,7 +25,8 @@ import java.util.Objects;
 public class Site {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "site_seq")
+    @SequenceGenerator(name = "site_seq", sequenceName = "site_id_seq", allocationSize = 50)
     private Integer id;
 
     @Enumerated(EnumType.STRING)
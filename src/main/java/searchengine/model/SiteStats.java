@@ -0,0 +1,42 @@
+package searchengine.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.sql.Timestamp;
+
+@Entity
+@Table(name = "site_stats")
+@NoArgsConstructor
+@Getter
+@Setter
+@ToString
+public class SiteStats {
+
+    @Id
+    @Column(name = "site_id")
+    private Integer siteId;
+
+    @NotNull
+    @Column(nullable = false)
+    private Integer pages;
+
+    @NotNull
+    @Column(nullable = false)
+    private Integer lemmas;
+
+    @NotNull
+    @Column(name = "updated_at", nullable = false)
+    private Timestamp updatedAt;
+
+    public SiteStats(Integer siteId, Integer pages, Integer lemmas, Timestamp updatedAt) {
+        this.siteId = siteId;
+        this.pages = pages;
+        this.lemmas = lemmas;
+        this.updatedAt = updatedAt;
+    }
+}
@@ -1,14 +1,18 @@
 package searchengine.repository;
 
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 import searchengine.model.Index;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface IndexRepository extends JpaRepository<Index, Integer> {
@@ -25,6 +29,24 @@ public interface IndexRepository extends JpaRepository<Index, Integer> {
     @Query("SELECT i FROM Index i WHERE i.page.id = :pageId")
     List<Index> findAllByPageId(@Param("pageId") Integer pageId);
 
+    @Query("SELECT COUNT(i) > 0 FROM Index i WHERE i.page.id = :pageId")
+    boolean existsByPageId(@Param("pageId") Integer pageId);
+
+    //Строки (лемма, id страницы, ранг) сайта, сгруппированные по лемме, для записи сегмента индекса
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "1000"))
+    @Query("SELECT l.lemma, i.page.id, i.rank FROM Index i JOIN i.lemma l WHERE l.site.id = :siteId ORDER BY l.id, i.page.id")
+    Stream<Object[]> streamPostingsBySiteId(@Param("siteId") Integer siteId);
+
+    @Query("SELECT l.lemma, i.page.id, i.rank FROM Index i JOIN i.lemma l WHERE i.page.id = :pageId ORDER BY l.id")
+    List<Object[]> findPostingsByPageId(@Param("pageId") Integer pageId);
+
+    //Позиции лемм запроса на страницах-кандидатах: id страницы, лемма, позиции
+    @Query("SELECT i.page.id, l.lemma, i.positions FROM Index i JOIN i.lemma l " +
+            "WHERE i.page.id IN :pageIds AND l.lemma IN :lemmas AND l.site.id = :siteId")
+    List<Object[]> findPositions(@Param("pageIds") Collection<Integer> pageIds,
+                                 @Param("lemmas") Collection<String> lemmas,
+                                 @Param("siteId") Integer siteId);
+
     @Modifying
     @Transactional
     @Query("DELETE FROM Index i WHERE i.page.id = :pageId")
@@ -37,4 +37,8 @@ public interface LemmaRepository extends JpaRepository<Lemma, Integer> {
             @Param("siteId") Integer siteId
     );
 
+    //Словарь всех сайтов: текст леммы и её суммарная частота
+    @Query("SELECT l.lemma, SUM(l.frequency) FROM Lemma l GROUP BY l.lemma")
+    List<Object[]> findAllLemmaFrequencies();
+
 }
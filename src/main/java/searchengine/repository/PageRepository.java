@@ -1,11 +1,14 @@
 package searchengine.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import searchengine.model.Page;
 
+import java.util.List;
 import java.util.Optional;
 
 
@@ -20,4 +23,15 @@ public interface PageRepository extends JpaRepository<Page, Integer> {
 
     @Query("SELECT COUNT(p) FROM Page p WHERE (:siteId IS NULL OR p.site.id = :siteId)")
     Integer getCountPages(@Param("siteId") Integer siteId);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Page p SET p.simHash = :simHash, p.duplicateOf = :duplicateOf WHERE p.id = :pageId")
+    void updateSimHash(@Param("pageId") Integer pageId,
+                       @Param("simHash") Long simHash,
+                       @Param("duplicateOf") Integer duplicateOf);
+
+    //Отпечатки страниц-оригиналов сайта: id страницы, simhash
+    @Query("SELECT p.id, p.simHash FROM Page p WHERE p.site.id = :siteId AND p.simHash IS NOT NULL AND p.duplicateOf IS NULL")
+    List<Object[]> findSimHashesBySiteId(@Param("siteId") Integer siteId);
 }
@@ -0,0 +1,38 @@
+package searchengine.runner;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import searchengine.model.Site;
+import searchengine.model.Status;
+import searchengine.repository.SiteRepository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/**
+ * Сайты, оставшиеся в статусе INDEXING после падения JVM, при старте помечаются FAILED:
+ * индексацию можно продолжить с контрольной точки через /api/startIndexing?resume=true.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IndexingRecoveryRunner {
+    private final SiteRepository siteRepository;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void markInterruptedSites() {
+        for (Site site : siteRepository.findAll()) {
+            if (site.getStatus() != Status.INDEXING) {
+                continue;
+            }
+            log.warn("Индексация сайта {} была прервана", site.getUrl());
+            site.setStatus(Status.FAILED);
+            site.setLastError("Индексация прервана, её можно продолжить с контрольной точки");
+            site.setStatusTime(Timestamp.valueOf(LocalDateTime.now()));
+            siteRepository.save(site);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package searchengine.segment;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Сегмент индекса, отображённый в память через {@link FileChannel#map}.
+ * Словарь и списки вхождений читаются абсолютными методами буфера прямо из page cache,
+ * поэтому один экземпляр безопасно использовать из нескольких потоков.
+ */
+public class Segment {
+    private final Path path;
+    private final long generation;
+    private final MappedByteBuffer buffer;
+    private final long coveredOffset;
+    private final long dictionaryOffset;
+    private final long offsetsOffset;
+    private final int termCount;
+
+    private Segment(Path path, long generation, MappedByteBuffer buffer) {
+        this.path = path;
+        this.generation = generation;
+        this.buffer = buffer;
+        int footer = buffer.limit() - SegmentWriter.FOOTER_SIZE;
+        if (footer < 0 || buffer.getInt(buffer.limit() - Integer.BYTES) != SegmentWriter.MAGIC) {
+            throw new IllegalStateException("Файл не является сегментом индекса: " + path);
+        }
+        int version = buffer.getInt(buffer.limit() - 2 * Integer.BYTES);
+        if (version != SegmentWriter.VERSION) {
+            throw new IllegalStateException("Неподдерживаемая версия сегмента " + version + ": " + path);
+        }
+        this.coveredOffset = buffer.getLong(footer);
+        this.dictionaryOffset = buffer.getLong(footer + Long.BYTES);
+        this.offsetsOffset = buffer.getLong(footer + 2 * Long.BYTES);
+        this.termCount = buffer.getInt(footer + 3 * Long.BYTES);
+    }
+
+    public static Segment open(Path path, long generation) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Сегмент больше 2 ГБ не поддерживается: " + path);
+            }
+            //Отображение остаётся действительным и после закрытия канала
+            return new Segment(path, generation, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public int getTermCount() {
+        return termCount;
+    }
+
+    //Проиндексирована ли страница в этом сегменте (в более старых сегментах она устарела)
+    public boolean covers(int pageId) {
+        int count = buffer.getInt((int) coveredOffset);
+        int base = (int) coveredOffset + Integer.BYTES;
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int value = buffer.getInt(base + mid * Integer.BYTES);
+            if (value < pageId) {
+                low = mid + 1;
+            } else if (value > pageId) {
+                high = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //Страница проиндексирована в одном из сегментов новее segmentIndex (сегменты - от нового к старому)
+    public static boolean isCoveredByNewer(List<Segment> segments, int segmentIndex, int pageId) {
+        for (int i = 0; i < segmentIndex; i++) {
+            if (segments.get(i).covers(pageId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int[] coveredPages() {
+        int count = buffer.getInt((int) coveredOffset);
+        int[] pages = new int[count];
+        for (int i = 0; i < count; i++) {
+            pages[i] = buffer.getInt((int) coveredOffset + Integer.BYTES + i * Integer.BYTES);
+        }
+        return pages;
+    }
+
+    //Бинарный поиск термина по словарю без декодирования строк
+    public Postings postings(String term) {
+        byte[] key = term.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = termCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int entry = entryPosition(mid);
+            int cmp = compareTerm(entry, key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                int length = termLength(entry);
+                int postingsOffset = (int) buffer.getLong(entry + Short.BYTES + length);
+                int docFreq = buffer.getInt(entry + Short.BYTES + length + Long.BYTES);
+                return new Postings(buffer, postingsOffset, docFreq);
+            }
+        }
+        return Postings.EMPTY;
+    }
+
+    public List<String> terms() {
+        List<String> terms = new ArrayList<>(termCount);
+        for (int i = 0; i < termCount; i++) {
+            int entry = entryPosition(i);
+            byte[] bytes = new byte[termLength(entry)];
+            buffer.get(entry + Short.BYTES, bytes);
+            terms.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+        return terms;
+    }
+
+    private int entryPosition(int index) {
+        return (int) dictionaryOffset + buffer.getInt((int) offsetsOffset + index * Integer.BYTES);
+    }
+
+    private int termLength(int entry) {
+        return buffer.getShort(entry) & 0xFFFF;
+    }
+
+    private int compareTerm(int entry, byte[] key) {
+        int length = termLength(entry);
+        int start = entry + Short.BYTES;
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = Byte.compareUnsigned(buffer.get(start + i), key[i]);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(length, key.length);
+    }
+
+    /**
+     * Список вхождений термина - представление над отображённым буфером без копирования.
+     */
+    public static class Postings {
+        static final Postings EMPTY = new Postings(null, 0, 0);
+
+        private final MappedByteBuffer buffer;
+        private final int offset;
+        private final int size;
+
+        Postings(MappedByteBuffer buffer, int offset, int size) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.size = size;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int pageId(int index) {
+            return buffer.getInt(offset + index * SegmentWriter.POSTING_SIZE);
+        }
+
+        public int rank(int index) {
+            return buffer.getInt(offset + index * SegmentWriter.POSTING_SIZE + Integer.BYTES);
+        }
+    }
+}
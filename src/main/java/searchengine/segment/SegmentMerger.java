@@ -0,0 +1,56 @@
+package searchengine.segment;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Сливает несколько сегментов сайта в один. Для каждой страницы берутся вхождения
+ * из самого нового сегмента, в котором она проиндексирована.
+ */
+public class SegmentMerger {
+
+    //Сегменты передаются от нового к старому
+    public static void merge(List<Segment> segments, Path target) throws IOException {
+        Set<String> terms = new HashSet<>();
+        for (Segment segment : segments) {
+            terms.addAll(segment.terms());
+        }
+
+        try (SegmentWriter writer = new SegmentWriter(target)) {
+            for (Segment segment : segments) {
+                for (int pageId : segment.coveredPages()) {
+                    writer.cover(pageId);
+                }
+            }
+            long[] postings = new long[16];
+            for (String term : terms) {
+                int count = 0;
+                for (int i = 0; i < segments.size(); i++) {
+                    Segment.Postings segmentPostings = segments.get(i).postings(term);
+                    for (int j = 0; j < segmentPostings.size(); j++) {
+                        int pageId = segmentPostings.pageId(j);
+                        if (Segment.isCoveredByNewer(segments, i, pageId)) {
+                            continue;
+                        }
+                        if (count == postings.length) {
+                            postings = Arrays.copyOf(postings, count * 2);
+                        }
+                        //pageId в старших битах, чтобы сортировка упорядочила вхождения по странице
+                        postings[count++] = ((long) pageId << 32) | (segmentPostings.rank(j) & 0xFFFFFFFFL);
+                    }
+                }
+                Arrays.sort(postings, 0, count);
+                writer.startTerm(term);
+                for (int k = 0; k < count; k++) {
+                    writer.addPosting((int) (postings[k] >>> 32), (int) postings[k]);
+                }
+                writer.endTerm();
+            }
+            writer.finish();
+        }
+    }
+}
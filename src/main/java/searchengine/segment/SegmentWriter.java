@@ -0,0 +1,144 @@
+package searchengine.segment;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Записывает неизменяемый файл сегмента за один проход.
+ * <p>
+ * Формат файла:
+ * <pre>
+ * postings:   (pageId int, rank int)*            - списки вхождений терминов подряд
+ * covered:    count int, pageId int*              - страницы, проиндексированные в сегменте
+ * dictionary: (length ushort, utf-8 bytes, postingsOffset long, docFreq int)*
+ *                                                  - термины, отсортированные по байтам UTF-8
+ * offsets:    entryOffset int*                    - смещения записей словаря для бинарного поиска
+ * footer:     coveredOffset long, dictionaryOffset long, offsetsOffset long,
+ *             termCount int, version int, magic int
+ * </pre>
+ * Термины добавляются через {@link #startTerm}, {@link #addPosting}, {@link #endTerm},
+ * файл пишется во временный и атомарно переименовывается в {@link #finish}.
+ */
+public class SegmentWriter implements Closeable {
+    static final int MAGIC = 0x5345474D;
+    static final int VERSION = 1;
+    static final int FOOTER_SIZE = 3 * Long.BYTES + 3 * Integer.BYTES;
+    static final int POSTING_SIZE = 2 * Integer.BYTES;
+
+    private final Path target;
+    private final Path tmp;
+    private final DataOutputStream out;
+    private final List<DictionaryEntry> dictionary = new ArrayList<>();
+    private final BitSet coveredPages = new BitSet();
+    private long position = 0;
+    private DictionaryEntry currentTerm;
+    private boolean finished = false;
+
+    public SegmentWriter(Path target) throws IOException {
+        this.target = target;
+        this.tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16));
+    }
+
+    //Отмечает страницу как проиндексированную в этом сегменте, даже если у неё нет вхождений
+    public void cover(int pageId) {
+        coveredPages.set(pageId);
+    }
+
+    public void startTerm(String term) {
+        if (currentTerm != null) {
+            throw new IllegalStateException("Термин '" + currentTerm.term() + "' не завершён");
+        }
+        currentTerm = new DictionaryEntry(term.getBytes(StandardCharsets.UTF_8), position);
+    }
+
+    public void addPosting(int pageId, int rank) throws IOException {
+        out.writeInt(pageId);
+        out.writeInt(rank);
+        position += POSTING_SIZE;
+        currentTerm.docFreq++;
+        coveredPages.set(pageId);
+    }
+
+    public void endTerm() {
+        if (currentTerm.docFreq > 0) {
+            dictionary.add(currentTerm);
+        }
+        currentTerm = null;
+    }
+
+    public void finish() throws IOException {
+        long coveredOffset = position;
+        writeInt(coveredPages.cardinality());
+        for (int pageId = coveredPages.nextSetBit(0); pageId >= 0; pageId = coveredPages.nextSetBit(pageId + 1)) {
+            writeInt(pageId);
+        }
+
+        dictionary.sort((a, b) -> Arrays.compareUnsigned(a.bytes, b.bytes));
+        long dictionaryOffset = position;
+        int[] entryOffsets = new int[dictionary.size()];
+        for (int i = 0; i < dictionary.size(); i++) {
+            DictionaryEntry entry = dictionary.get(i);
+            entryOffsets[i] = Math.toIntExact(position - dictionaryOffset);
+            out.writeShort(entry.bytes.length);
+            out.write(entry.bytes);
+            out.writeLong(entry.postingsOffset);
+            out.writeInt(entry.docFreq);
+            position += Short.BYTES + entry.bytes.length + Long.BYTES + Integer.BYTES;
+        }
+
+        long offsetsOffset = position;
+        for (int entryOffset : entryOffsets) {
+            writeInt(entryOffset);
+        }
+
+        out.writeLong(coveredOffset);
+        out.writeLong(dictionaryOffset);
+        out.writeLong(offsetsOffset);
+        out.writeInt(dictionary.size());
+        out.writeInt(VERSION);
+        out.writeInt(MAGIC);
+        out.close();
+
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        finished = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!finished) {
+            out.close();
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private void writeInt(int value) throws IOException {
+        out.writeInt(value);
+        position += Integer.BYTES;
+    }
+
+    private static class DictionaryEntry {
+        private final byte[] bytes;
+        private final long postingsOffset;
+        private int docFreq;
+
+        DictionaryEntry(byte[] bytes, long postingsOffset) {
+            this.bytes = bytes;
+            this.postingsOffset = postingsOffset;
+        }
+
+        String term() {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
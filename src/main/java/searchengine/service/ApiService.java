@@ -3,7 +3,7 @@ package searchengine.service;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public interface ApiService {
-    void startIndexing(AtomicBoolean indexingProcessing);
+    void startIndexing(AtomicBoolean indexingProcessing, boolean resume);
 
     void refreshPage(String urlPage);
 }
\ No newline at end of file
@@ -0,0 +1,12 @@
+package searchengine.service;
+
+import searchengine.dto.index.SitemapUrl;
+import searchengine.util.RobotsRules;
+
+import java.util.List;
+
+public interface CrawlRulesService {
+    RobotsRules getRobotsRules(String siteUrl);
+
+    List<SitemapUrl> getSitemapUrls(String siteUrl, RobotsRules robotsRules);
+}
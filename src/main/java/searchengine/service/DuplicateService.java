@@ -0,0 +1,15 @@
+package searchengine.service;
+
+import searchengine.model.Page;
+
+import java.util.Map;
+import java.util.Optional;
+
+public interface DuplicateService {
+    //Сохраняет отпечаток страницы и возвращает id страницы-оригинала, если страница - почти дубликат
+    Optional<Integer> registerPage(Page page, Map<String, Integer> lemmas);
+
+    boolean isSkipDuplicates();
+
+    void clear();
+}
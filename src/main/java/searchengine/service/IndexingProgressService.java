@@ -0,0 +1,21 @@
+package searchengine.service;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import searchengine.model.Site;
+
+import java.util.function.IntSupplier;
+
+public interface IndexingProgressService {
+    //Подписка на события хода индексации (Server-Sent Events)
+    SseEmitter subscribe();
+
+    //Начат обход сайта; queueSize - текущая длина очереди обхода
+    void siteStarted(Site site, IntSupplier queueSize);
+
+    //Загружена страница сайта с кодом ответа statusCode
+    void pageFetched(int siteId, int statusCode);
+
+    void siteStatusChanged(Site site);
+
+    void clear();
+}
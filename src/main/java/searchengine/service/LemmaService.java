@@ -1,9 +1,13 @@
 package searchengine.service;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 
 public interface LemmaService {
     Map<String, Integer> getLemmasFromText(String text) throws IOException;
+    Map<String, Integer> getLemmasFromPlainText(String text);
+    //Позиции (номера слов в тексте) каждой леммы в порядке возрастания
+    Map<String, List<Integer>> getLemmaPositions(String text);
     String getLemmaByWord(String word);
 }
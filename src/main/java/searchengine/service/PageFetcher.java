@@ -0,0 +1,12 @@
+package searchengine.service;
+
+import searchengine.dto.index.FetchResult;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+public interface PageFetcher {
+    CompletableFuture<FetchResult> fetchAsync(String url);
+
+    FetchResult fetch(String url) throws IOException;
+}
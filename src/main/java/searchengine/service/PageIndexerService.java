@@ -5,5 +5,9 @@ import searchengine.model.Page;
 public interface PageIndexerService {
     void index(Page indexingPage);
 
-    void refreshIndex(Page refreshPage);
+    //true, если строки индекса страницы перезаписаны; false, если почти дубликат сохранён без индекса
+    boolean refreshIndex(Page refreshPage);
+
+    //Есть ли у сохранённой страницы строки индекса
+    boolean isIndexed(Page page);
 }
\ No newline at end of file
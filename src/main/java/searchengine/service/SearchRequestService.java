@@ -0,0 +1,10 @@
+package searchengine.service;
+
+import org.springframework.http.ResponseEntity;
+
+import java.util.concurrent.CompletableFuture;
+
+public interface SearchRequestService {
+    //Поиск в отдельном пуле: 503, если очередь запросов заполнена или поиск не уложился в срок
+    CompletableFuture<ResponseEntity<Object>> submit(String query, String site, int offset, int limit);
+}
@@ -0,0 +1,23 @@
+package searchengine.service;
+
+import searchengine.model.Page;
+import searchengine.model.Site;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+public interface SegmentIndexService {
+    void writeSiteSegment(Site site);
+
+    //Сегмент поверх текущих с новыми строками индекса страницы
+    void updatePage(Page page);
+
+    //Сегмент поверх текущих, в котором страница отмечена без строк индекса
+    void removePage(Page page);
+
+    Optional<Map<Integer, Integer>> findPagesRelevance(List<String> lemmas, Collection<Integer> siteIds);
+
+    void clear();
+}
@@ -0,0 +1,18 @@
+package searchengine.service;
+
+import searchengine.dto.statistic.SiteCounters;
+
+public interface SiteStatsService {
+    //Сохранена новая страница сайта
+    void pageAdded(int siteId);
+
+    //Сохранена новая лемма сайта
+    void lemmaAdded(int siteId);
+
+    SiteCounters getCounters(int siteId);
+
+    //Записывает счётчики сайта в таблицу site_stats
+    void save(int siteId);
+
+    void clear();
+}
@@ -5,5 +5,6 @@ import searchengine.dto.statistic.StatisticsResponse;
 import java.net.MalformedURLException;
 
 public interface StatisticsService {
-    StatisticsResponse getStatistics() throws MalformedURLException;
+    //indexing - запущена ли сейчас индексация
+    StatisticsResponse getStatistics(boolean indexing) throws MalformedURLException;
 }
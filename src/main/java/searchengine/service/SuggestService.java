@@ -0,0 +1,17 @@
+package searchengine.service;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface SuggestService {
+    //Варианты запроса: последнее слово дополняется леммами из словаря проиндексированных сайтов
+    List<String> suggest(String query, int limit);
+
+    boolean isKnown(String lemma);
+
+    //Ближайшая по расстоянию Левенштейна лемма словаря для леммы, которой в словаре нет
+    Optional<String> correct(String lemma);
+
+    //Словарь перестраивается при следующем обращении
+    void invalidate();
+}
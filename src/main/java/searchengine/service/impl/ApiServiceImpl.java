@@ -1,29 +1,48 @@
 package searchengine.service.impl;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import searchengine.config.ConfigConnection;
+import searchengine.config.CrawlerConfig;
 import searchengine.config.SiteConfig;
 import searchengine.config.ListSiteConfig;
+import searchengine.dto.index.SitemapUrl;
 import searchengine.exception.UrlNotInSiteListException;
+import searchengine.model.Page;
 import searchengine.model.Site;
 import searchengine.model.Status;
+import searchengine.repository.PageContentRepository;
 import searchengine.repository.PageRepository;
 import searchengine.repository.SiteRepository;
 import searchengine.service.ApiService;
+import searchengine.service.CrawlRulesService;
+import searchengine.service.DuplicateService;
+import searchengine.service.IndexingProgressService;
+import searchengine.service.PageFetcher;
 import searchengine.service.PageIndexerService;
-import searchengine.util.UrlValidator;
+import searchengine.service.SegmentIndexService;
+import searchengine.service.SiteStatsService;
+import searchengine.service.SuggestService;
+import searchengine.util.RobotsRules;
+import searchengine.util.UrlCanonicalizer;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
-import java.util.concurrent.ForkJoinPool;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -31,46 +50,86 @@ import java.util.concurrent.atomic.AtomicBoolean;
 public class ApiServiceImpl implements ApiService {
 
     private final PageIndexerService pageIndexerService;
+    private final SegmentIndexService segmentIndexService;
+    private final DuplicateService duplicateService;
+    private final SuggestService suggestService;
+    private final SiteStatsService siteStatsService;
+    private final IndexingProgressService indexingProgressService;
     private final SiteRepository siteRepository;
     private final PageRepository pageRepository;
+    private final PageContentRepository pageContentRepository;
     private final ListSiteConfig sitesToIndexing;
-    private final ConfigConnection configConnection;
+    private final PageFetcher pageFetcher;
+    private final CrawlRulesService crawlRulesService;
+    private final CrawlerConfig crawlerConfig;
+    private final MeterRegistry meterRegistry;
     private AtomicBoolean indexingProcessing;
 
 
     @Override
-    public void startIndexing(AtomicBoolean indexingProcessing) {
+    public void startIndexing(AtomicBoolean indexingProcessing, boolean resume) {
         this.indexingProcessing = indexingProcessing;
         try {
-            resetAndSaveAllSites();
-            indexAllSite();
+            Map<Site, CrawlFrontier> frontiers = resume ? loadSavedFrontiers() : new HashMap<>();
+            if (frontiers.isEmpty()) {
+                resetAndSaveAllSites();
+                for (Site site : siteRepository.findAll()) {
+                    frontiers.put(site, createFrontier(site));
+                }
+            }
+            indexAllSite(frontiers);
         } catch (RuntimeException | InterruptedException ex) {
             indexingProcessing.set(false);
             log.error("Error: ", ex);
         }
     }
 
-    private void indexAllSite() throws InterruptedException {
-        Set<Site> sites = new HashSet<>(siteRepository.findAll());
+    private void indexAllSite(Map<Site, CrawlFrontier> frontiers) throws InterruptedException {
         List<Thread> indexingThreadList = new ArrayList<>();
-        for (Site site : sites) {
+        //Периодическая запись очередей обхода, по которой индексация продолжается после падения JVM
+        ScheduledExecutorService checkpointExecutor = Executors.newSingleThreadScheduledExecutor();
+        for (Map.Entry<Site, CrawlFrontier> entry : frontiers.entrySet()) {
+            Site site = entry.getKey();
+            CrawlFrontier frontier = entry.getValue();
+            FrontierCheckpoint checkpoint = createCheckpoint(site);
+            indexingProgressService.siteStarted(site, frontier::getQueueSize);
+            int interval = crawlerConfig.getCheckpointIntervalSeconds();
+            checkpointExecutor.scheduleWithFixedDelay(() -> writeCheckpoint(site, frontier, checkpoint),
+                    interval, interval, TimeUnit.SECONDS);
             Runnable indexSite = () -> {
+                boolean crawlCompleted = false;
                 try {
                     log.info("Запущена индексация сайта id: {} url: {}", site.getId(), site.getUrl());
-                    new ForkJoinPool().invoke(new PageFinder(site,
-                            pageRepository,
-                            configConnection, pageIndexerService,
-                            indexingProcessing));
+                    RobotsRules robotsRules = crawlRulesService.getRobotsRules(site.getUrl());
+                    List<SitemapUrl> sitemapUrls = frontier.isEmpty()
+                            ? crawlRulesService.getSitemapUrls(site.getUrl(), robotsRules)
+                            : List.of();
+                    new PageFinder(site,
+                            pageRepository, pageContentRepository,
+                            pageFetcher, pageIndexerService,
+                            indexingProcessing, robotsRules, frontier, crawlerConfig,
+                            siteStatsService, indexingProgressService, meterRegistry)
+                            .crawlSite(sitemapUrls);
+                    crawlCompleted = true;
                 } catch (SecurityException ex) {
                     indexErrorHandler(site, ex.getMessage());
                 } catch (Exception ex) {
                     log.info("Unexpected exception site: {} message: {}", site.getUrl() , ex.getMessage());
                     indexErrorHandler(site, "Неожиданная ошибка");
                 }
-                if (!indexingProcessing.get()) {
+                if (!crawlCompleted) {
+                    //статус FAILED уже выставлен; контрольная точка сохраняется, чтобы обход можно было продолжить
+                    log.warn("Индексация сайта {} завершилась ошибкой", site.getUrl());
+                    writeCheckpoint(site, frontier, checkpoint);
+                } else if (!indexingProcessing.get()) {
                     log.warn("Индексация остановлена пользователем, сайт:" + site.getUrl());
+                    writeCheckpoint(site, frontier, checkpoint);
                     indexErrorHandler(site,"Индексация остановлена пользователем");
                 } else {
+                    deleteCheckpoint(site, checkpoint);
+                    siteStatsService.save(site.getId());
+                    //сегмент публикуется только по полностью обойдённому сайту, иначе поиск идёт по БД
+                    segmentIndexService.writeSiteSegment(site);
                     site.setStatus(Status.INDEXED);
                     log.info("Проиндексирован сайт: {}", site.getUrl());
                 }
@@ -80,31 +139,133 @@ public class ApiServiceImpl implements ApiService {
             indexingThreadList.add(thread);
             thread.start();
         }
-        for (Thread thread : indexingThreadList) {
-            thread.join();
+        try {
+            for (Thread thread : indexingThreadList) {
+                thread.join();
+            }
+        } finally {
+            checkpointExecutor.shutdownNow();
         }
+        suggestService.invalidate();
         indexingProcessing.set(false);
     }
 
+    //Сайты, обход которых был остановлен или прерван падением JVM, продолжаются с последней контрольной точки
+    private Map<Site, CrawlFrontier> loadSavedFrontiers() {
+        Map<Site, CrawlFrontier> frontiers = new HashMap<>();
+        for (Site site : siteRepository.findAll()) {
+            FrontierCheckpoint checkpoint = createCheckpoint(site);
+            if (site.getStatus() == Status.INDEXED || !checkpoint.exists()) {
+                continue;
+            }
+            CrawlFrontier frontier = createFrontier(site);
+            try {
+                checkpoint.restore(frontier);
+            } catch (IOException ex) {
+                log.warn("Не удалось загрузить очередь обхода сайта {}: {}", site.getUrl(), ex.getMessage());
+                continue;
+            }
+            log.info("Продолжение индексации сайта {}: загружено страниц {}, в очереди {}",
+                    site.getUrl(), frontier.getVisitedCount(), frontier.getQueueSize());
+            site.setStatus(Status.INDEXING);
+            site.setLastError(null);
+            saveIndexingSite(site);
+            frontiers.put(site, frontier);
+        }
+        return frontiers;
+    }
+
+    private CrawlFrontier createFrontier(Site site) {
+        SiteConfig siteConfig = sitesToIndexing.getSites().stream()
+                .filter(config -> config.getUrl().toString().equals(site.getUrl()))
+                .findFirst()
+                .orElseGet(SiteConfig::new);
+        return new CrawlFrontier(siteConfig.getMaxPages(), siteConfig.getMaxDepth());
+    }
+
+    private FrontierCheckpoint createCheckpoint(Site site) {
+        return new FrontierCheckpoint(Paths.get(crawlerConfig.getFrontierPath()), site.getId());
+    }
+
+    //Вместе с очередью обхода сохраняются счётчики статистики сайта
+    private void writeCheckpoint(Site site, CrawlFrontier frontier, FrontierCheckpoint checkpoint) {
+        siteStatsService.save(site.getId());
+        try {
+            checkpoint.write(frontier);
+        } catch (IOException | RuntimeException ex) {
+            log.warn("Не удалось записать контрольную точку обхода сайта {}: {}", site.getUrl(), ex.getMessage());
+        }
+    }
+
+    private void deleteCheckpoint(Site site, FrontierCheckpoint checkpoint) {
+        try {
+            checkpoint.delete();
+        } catch (IOException ex) {
+            log.warn("Не удалось удалить контрольную точку обхода сайта {}: {}", site.getUrl(), ex.getMessage());
+        }
+    }
+
+    private void deleteSavedFrontiers() {
+        Path directory = Paths.get(crawlerConfig.getFrontierPath());
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(this::deleteFile);
+        } catch (IOException ex) {
+            log.warn("Не удалось очистить каталог очередей обхода: {}", ex.getMessage());
+        }
+    }
+
+    private void deleteFile(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ex) {
+            log.warn("Не удалось удалить файл {}: {}", file, ex.getMessage());
+        }
+    }
+
     @Override
     public void refreshPage(String urlPage)  {
-        String siteUrl = UrlValidator.getSiteUrl(urlPage);
-        if (!isValidUrlPage(urlPage,siteUrl)) {
+        SiteConfig siteConfig = null;
+        String canonicalUrl = null;
+        //Адрес приводится к каноническому виду, как ссылки при обходе, иначе обновление страницы
+        //по другому варианту адреса (www, завершающий '/', utm-метки) создало бы вторую строку page
+        for (SiteConfig config : sitesToIndexing.getSites()) {
+            UrlCanonicalizer canonicalizer = new UrlCanonicalizer(config.getUrl().toString(), crawlerConfig.getStrippedQueryParams());
+            String canonical = canonicalizer.canonicalize(urlPage);
+            if (canonical != null && canonical.startsWith(canonicalizer.getSitePrefix())) {
+                siteConfig = config;
+                canonicalUrl = canonical;
+                break;
+            }
+        }
+        if (siteConfig == null) {
             log.info("not valid urlPage: {}", urlPage );
             throw new UrlNotInSiteListException();
         }
         Site site = new Site();
-        Site existSite = siteRepository.getSiteByUrl(siteUrl);
+        Site existSite = siteRepository.getSiteByUrl(siteConfig.getUrl().toString());
         site.setId(existSite.getId());
         site.setUrl(existSite.getUrl());
         site.setStatus(Status.INDEXING);
 
         try {
-            log.info("Запущена переиндексация страницы: {}", urlPage);
+            log.info("Запущена переиндексация страницы: {}", canonicalUrl);
             PageFinder pageFinder = new PageFinder(site,
-                    pageRepository,
-                    configConnection, pageIndexerService, indexingProcessing);
-            pageFinder.refreshPage(urlPage);
+                    pageRepository, pageContentRepository,
+                    pageFetcher, pageIndexerService, indexingProcessing,
+                    RobotsRules.allowAll(), createFrontier(site), crawlerConfig,
+                    siteStatsService, indexingProgressService, meterRegistry);
+            PageFinder.RefreshedPage refreshedPage = pageFinder.refreshPage(canonicalUrl);
+            //сегмент пишется, только если строки индекса страницы в БД действительно изменились
+            switch (refreshedPage.indexChange()) {
+                case UPDATED -> segmentIndexService.updatePage(refreshedPage.page());
+                case REMOVED -> segmentIndexService.removePage(refreshedPage.page());
+                case UNCHANGED -> log.debug("Индекс страницы {} не изменился", canonicalUrl);
+            }
+            siteStatsService.save(site.getId());
+            suggestService.invalidate();
         } catch (SecurityException ex) {
             log.info("Security Exception: {}", ex.getMessage());
             indexErrorHandler(site,ex.getMessage());
@@ -119,34 +280,6 @@ public class ApiServiceImpl implements ApiService {
         saveIndexingSite(site);
     }
 
-    private boolean isValidUrlPage(String urlPage, String urlSite) {
-        if (urlPage.isBlank()) {
-            return false;
-        }
-
-        if (!isTrustedUrl(urlPage, urlSite)) {
-            return false;
-        }
-
-        return true;
-    }
-
-    private List<String> getUrlsToIndexing() {
-        return sitesToIndexing.getSites().stream()
-                .map(siteConfig -> siteConfig.getUrl().toString())
-                .toList();
-    }
-
-    private boolean isTrustedUrl(String urlPage, String urlSite) {
-        for (String trustedUrl : getUrlsToIndexing()) {
-            if (UrlValidator.isInternalUrl(urlPage, urlSite)) {
-                return true;
-            }
-        }
-
-        return false;
-    }
-
     private void indexErrorHandler(Site site, String errorMessage) {
         site.setStatus(Status.FAILED);
         site.setLastError(errorMessage);
@@ -154,6 +287,11 @@ public class ApiServiceImpl implements ApiService {
 
     @Transactional
     private void resetAndSaveAllSites() {
+        segmentIndexService.clear();
+        duplicateService.clear();
+        siteStatsService.clear();
+        indexingProgressService.clear();
+        deleteSavedFrontiers();
         siteRepository.deleteAll();
         for (SiteConfig siteConfig : sitesToIndexing.getSites()) {
             Site site = new Site();
@@ -174,6 +312,7 @@ public class ApiServiceImpl implements ApiService {
         site.setLastError(indexingSite.getLastError());
         site.setStatusTime(Timestamp.valueOf(LocalDateTime.now()));
         siteRepository.save(site);
+        indexingProgressService.siteStatusChanged(site);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,353 @@
+package searchengine.service.impl;
+
+import lombok.Getter;
+import searchengine.util.LongHashSet;
+import searchengine.util.UrlFingerprint;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Очередь обхода сайта с приоритетом и бюджетами.
+ * <p>
+ * Первым выдаётся адрес с наименьшей оценкой: меньше глубина, выше приоритет из sitemap,
+ * больше входящих ссылок. Адреса глубже maxDepth не принимаются, после выдачи maxPages
+ * адресов обход заканчивается, а в очереди хранится не больше maxPages адресов - при
+ * переполнении вытесняется худший, поэтому память ограничена бюджетом сайта.
+ * <p>
+ * Посещённые адреса хранятся 64-битными отпечатками. Изменения очереди (добавленные, вытесненные
+ * и обработанные адреса) накапливаются в журнале, который {@link FrontierCheckpoint} периодически
+ * дописывает в файл; полный снимок очереди пишется методом {@link #save}.
+ */
+public class CrawlFrontier {
+    private static final int SNAPSHOT_MAGIC = 0x46524E32;
+    private static final byte JOURNAL_QUEUED = 'Q';
+    private static final byte JOURNAL_VISITED = 'V';
+    private static final byte JOURNAL_EVICTED = 'E';
+    private static final double DEPTH_WEIGHT = 1.0;
+    private static final double SITEMAP_WEIGHT = 2.0;
+    private static final double LINK_WEIGHT = 0.5;
+    private static final long WAIT_MILLIS = 200;
+    private static final Comparator<FrontierUrl> ORDER = Comparator
+            .comparingDouble(FrontierUrl::score)
+            .thenComparingLong(url -> url.sequence);
+
+    @Getter
+    private final int maxPages;
+    @Getter
+    private final int maxDepth;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final TreeSet<FrontierUrl> queue = new TreeSet<>(ORDER);
+    private final Map<String, FrontierUrl> queued = new HashMap<>();
+    private final Map<String, FrontierUrl> inFlight = new HashMap<>();
+    private final LongHashSet visited = new LongHashSet();
+    private final ByteArrayOutputStream journalBuffer = new ByteArrayOutputStream();
+    private final DataOutputStream journal = new DataOutputStream(journalBuffer);
+    private long sequence;
+
+    public CrawlFrontier(int maxPages, int maxDepth) {
+        this.maxPages = maxPages;
+        this.maxDepth = maxDepth;
+    }
+
+    //Добавляет адрес или, если он уже в очереди, повышает его приоритет за счёт ещё одной входящей ссылки
+    public boolean add(String url, int depth, double sitemapPriority) {
+        if (depth > maxDepth) {
+            return false;
+        }
+        lock.lock();
+        try {
+            if (visited.contains(UrlFingerprint.of(url)) || inFlight.containsKey(url)) {
+                return false;
+            }
+            FrontierUrl existing = queued.get(url);
+            if (existing != null) {
+                queue.remove(existing);
+                existing.inlinks++;
+                existing.depth = Math.min(existing.depth, depth);
+                existing.sitemapPriority = Math.max(existing.sitemapPriority, sitemapPriority);
+                queue.add(existing);
+                return false;
+            }
+            FrontierUrl frontierUrl = new FrontierUrl(url, depth, sitemapPriority, 1, sequence++);
+            if (queue.size() >= maxPages) {
+                FrontierUrl worst = queue.last();
+                if (ORDER.compare(frontierUrl, worst) >= 0) {
+                    return false;
+                }
+                queue.pollLast();
+                queued.remove(worst.url);
+                //без записи в журнале вытесненный адрес вернулся бы в очередь при восстановлении
+                journalEvicted(worst);
+            }
+            queue.add(frontierUrl);
+            queued.put(url, frontierUrl);
+            journalQueued(frontierUrl);
+            changed.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Выдаёт следующий адрес для обхода. Ждёт, пока очередь пуста, но другие потоки ещё
+     * обрабатывают страницы и могут добавить ссылки. Возвращает null, когда обход закончен:
+     * исчерпан бюджет страниц, очередь пуста и нет страниц в работе, или индексация остановлена.
+     */
+    public FrontierUrl next(AtomicBoolean indexingProcessing) throws InterruptedException {
+        lock.lock();
+        try {
+            while (indexingProcessing.get()) {
+                if (visited.size() + inFlight.size() >= maxPages) {
+                    return null;
+                }
+                FrontierUrl next = queue.pollFirst();
+                if (next != null) {
+                    queued.remove(next.url);
+                    inFlight.put(next.url, next);
+                    return next;
+                }
+                if (inFlight.isEmpty()) {
+                    return null;
+                }
+                changed.await(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void done(FrontierUrl url) {
+        lock.lock();
+        try {
+            inFlight.remove(url.url);
+            long fingerprint = UrlFingerprint.of(url.url);
+            visited.add(fingerprint);
+            journalVisited(fingerprint);
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //Адрес, обработка которого не завершена (обход остановлен), возвращается в очередь и не считается
+    //посещённым. В журнале адрес остаётся ожидающим: запись о посещении для него не делается
+    public void release(FrontierUrl url) {
+        lock.lock();
+        try {
+            inFlight.remove(url.url);
+            if (queued.putIfAbsent(url.url, url) == null) {
+                queue.add(url);
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isEmpty() {
+        lock.lock();
+        try {
+            return queue.isEmpty() && inFlight.isEmpty() && visited.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getVisitedCount() {
+        lock.lock();
+        try {
+            return visited.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueueSize() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //Изменения очереди с прошлого вызова в формате журнала; буфер журнала очищается
+    public byte[] drainJournal() {
+        lock.lock();
+        try {
+            byte[] records = journalBuffer.toByteArray();
+            journalBuffer.reset();
+            return records;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //Снимок включает все изменения журнала, поэтому буфер журнала очищается.
+    //Адреса в работе сохраняются как ожидающие: их обработка могла не завершиться
+    public void save(Path file) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        lock.lock();
+        try {
+            try (FileOutputStream fileOut = new FileOutputStream(tmp.toFile());
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(visited.size());
+                for (long fingerprint : visited.toArray()) {
+                    out.writeLong(fingerprint);
+                }
+                List<FrontierUrl> pending = new ArrayList<>(inFlight.values());
+                pending.addAll(queue);
+                out.writeInt(pending.size());
+                for (FrontierUrl url : pending) {
+                    writeQueued(out, url);
+                }
+                out.flush();
+                fileOut.getFD().sync();
+            }
+            journalBuffer.reset();
+        } finally {
+            lock.unlock();
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public void load(Path file) throws IOException {
+        lock.lock();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Файл не является сохранённой очередью обхода: " + file);
+            }
+            int visitedCount = in.readInt();
+            for (int i = 0; i < visitedCount; i++) {
+                visited.add(in.readLong());
+            }
+            int pendingCount = in.readInt();
+            for (int i = 0; i < pendingCount; i++) {
+                restoreQueued(readQueued(in));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //Повторяет записи журнала поверх загруженного снимка. Незаконченная последняя запись
+    //(сбой во время записи) пропускается. Повтор идемпотентен.
+    public void replayJournal(Path file) throws IOException {
+        lock.lock();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (true) {
+                int type = in.read();
+                if (type == JOURNAL_QUEUED) {
+                    restoreQueued(readQueued(in));
+                } else if (type == JOURNAL_VISITED) {
+                    visited.add(in.readLong());
+                } else if (type == JOURNAL_EVICTED) {
+                    FrontierUrl evicted = queued.remove(in.readUTF());
+                    if (evicted != null) {
+                        queue.remove(evicted);
+                    }
+                } else {
+                    break;
+                }
+            }
+        } catch (EOFException ex) {
+            //последняя запись журнала не была дописана до конца
+        } finally {
+            try {
+                removeVisitedFromQueue();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void removeVisitedFromQueue() {
+        queued.values().removeIf(url -> {
+            boolean isVisited = visited.contains(UrlFingerprint.of(url.url));
+            if (isVisited) {
+                queue.remove(url);
+            }
+            return isVisited;
+        });
+    }
+
+    private void restoreQueued(FrontierUrl url) {
+        if (!visited.contains(UrlFingerprint.of(url.url)) && queued.putIfAbsent(url.url, url) == null) {
+            queue.add(url);
+        }
+    }
+
+    private FrontierUrl readQueued(DataInputStream in) throws IOException {
+        return new FrontierUrl(in.readUTF(), in.readInt(), in.readDouble(), in.readInt(), sequence++);
+    }
+
+    private static void writeQueued(DataOutputStream out, FrontierUrl url) throws IOException {
+        out.writeUTF(url.url);
+        out.writeInt(url.depth);
+        out.writeDouble(url.sitemapPriority);
+        out.writeInt(url.inlinks);
+    }
+
+    private void journalQueued(FrontierUrl url) {
+        try {
+            journal.writeByte(JOURNAL_QUEUED);
+            writeQueued(journal, url);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void journalEvicted(FrontierUrl url) {
+        try {
+            journal.writeByte(JOURNAL_EVICTED);
+            journal.writeUTF(url.url);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void journalVisited(long fingerprint) {
+        try {
+            journal.writeByte(JOURNAL_VISITED);
+            journal.writeLong(fingerprint);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Getter
+    public static class FrontierUrl {
+        private final String url;
+        private int depth;
+        private double sitemapPriority;
+        private int inlinks;
+        private final long sequence;
+
+        FrontierUrl(String url, int depth, double sitemapPriority, int inlinks, long sequence) {
+            this.url = url;
+            this.depth = depth;
+            this.sitemapPriority = sitemapPriority;
+            this.inlinks = inlinks;
+            this.sequence = sequence;
+        }
+
+        double score() {
+            return depth * DEPTH_WEIGHT
+                    - sitemapPriority * SITEMAP_WEIGHT
+                    - Math.log1p(inlinks) * LINK_WEIGHT;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package searchengine.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.Connection;
+import org.jsoup.Jsoup;
+import org.springframework.stereotype.Service;
+import searchengine.config.ConfigConnection;
+import searchengine.config.CrawlerConfig;
+import searchengine.dto.index.SitemapUrl;
+import searchengine.service.CrawlRulesService;
+import searchengine.util.RobotsRules;
+import searchengine.util.SitemapReader;
+import searchengine.util.UrlCanonicalizer;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CrawlRulesServiceImpl implements CrawlRulesService {
+    private static final Duration ROBOTS_TTL = Duration.ofHours(24);
+    private static final int MAX_SITEMAPS = 50;
+    private static final int MAX_SITEMAP_URLS = 50_000;
+    //Google читает не больше 500 КиБ robots.txt, остальное игнорируется
+    private static final int MAX_ROBOTS_SIZE = 500 * 1024;
+    //Сначала недавно изменённые страницы, затем страницы с большим priority
+    private static final Comparator<SitemapUrl> SITEMAP_ORDER = Comparator
+            .comparing(SitemapUrl::getLastModified, Comparator.nullsLast(Comparator.<Instant>reverseOrder()))
+            .thenComparing(Comparator.comparingDouble(SitemapUrl::getPriority).reversed());
+
+    private final ConfigConnection configConnection;
+    private final CrawlerConfig crawlerConfig;
+    private final Map<String, CachedRobots> robotsCache = new ConcurrentHashMap<>();
+
+    @Override
+    public RobotsRules getRobotsRules(String siteUrl) {
+        CachedRobots cached = robotsCache.get(siteUrl);
+        if (cached != null && cached.loadedAt.plus(ROBOTS_TTL).isAfter(Instant.now())) {
+            return cached.rules;
+        }
+        RobotsRules rules = loadRobotsRules(siteUrl);
+        robotsCache.put(siteUrl, new CachedRobots(rules, Instant.now()));
+        return rules;
+    }
+
+    @Override
+    public List<SitemapUrl> getSitemapUrls(String siteUrl, RobotsRules robotsRules) {
+        Deque<String> sitemapQueue = new ArrayDeque<>(robotsRules.getSitemaps());
+        if (sitemapQueue.isEmpty()) {
+            sitemapQueue.add(siteUrl + "sitemap.xml");
+        }
+        Set<String> processedSitemaps = new HashSet<>();
+        //Адреса из sitemap приводятся к каноническому виду, как ссылки при обходе, и по нему же
+        //проверяются правилами robots.txt и отбрасываются повторы
+        UrlCanonicalizer canonicalizer = new UrlCanonicalizer(siteUrl, crawlerConfig.getStrippedQueryParams());
+        Map<String, SitemapUrl> urls = new LinkedHashMap<>();
+
+        while (!sitemapQueue.isEmpty() && processedSitemaps.size() < MAX_SITEMAPS && urls.size() < MAX_SITEMAP_URLS) {
+            String sitemap = sitemapQueue.poll();
+            if (!processedSitemaps.add(sitemap)) {
+                continue;
+            }
+            try (InputStream input = openSitemap(sitemap)) {
+                SitemapReader.read(input,
+                        url -> {
+                            String canonicalUrl = getAllowedUrl(url.getLoc(), canonicalizer, robotsRules);
+                            if (urls.size() < MAX_SITEMAP_URLS && canonicalUrl != null) {
+                                urls.putIfAbsent(canonicalUrl,
+                                        new SitemapUrl(canonicalUrl, url.getLastModified(), url.getPriority()));
+                            }
+                        },
+                        sitemapQueue::add);
+            } catch (Exception ex) {
+                log.debug("Не удалось прочитать sitemap {}: {}", sitemap, ex.getMessage());
+            }
+        }
+
+        List<SitemapUrl> result = new ArrayList<>(urls.values());
+        result.sort(SITEMAP_ORDER);
+        log.info("Из sitemap сайта {} получено адресов: {}", siteUrl, result.size());
+        return result;
+    }
+
+    private RobotsRules loadRobotsRules(String siteUrl) {
+        try {
+            Connection.Response response = getConnection(siteUrl + "robots.txt", MAX_ROBOTS_SIZE).execute();
+            if (response.statusCode() != 200) {
+                return RobotsRules.allowAll();
+            }
+            return RobotsRules.parse(response.body(), configConnection.getUserAgent());
+        } catch (Exception ex) {
+            log.debug("robots.txt сайта {} недоступен: {}", siteUrl, ex.getMessage());
+            return RobotsRules.allowAll();
+        }
+    }
+
+    /**
+     * Тело sitemap читается не больше maxSitemapSize байт. Ответ с Content-Encoding: gzip распаковывает
+     * Jsoup, и ограничение действует на распакованный поток. Сжатый файл (sitemap.xml.gz) определяется
+     * по сигнатуре gzip, а не по имени, и его распакованный размер ограничен тем же лимитом.
+     */
+    private InputStream openSitemap(String sitemapUrl) throws IOException {
+        int maxSize = crawlerConfig.getMaxSitemapSize();
+        BufferedInputStream body = new BufferedInputStream(getConnection(sitemapUrl, maxSize).execute().bodyStream());
+        body.mark(2);
+        boolean gzip = body.read() == 0x1f && body.read() == 0x8b;
+        body.reset();
+        return gzip ? new LimitedInputStream(new GZIPInputStream(body), maxSize) : body;
+    }
+
+    //Канонический адрес страницы сайта, разрешённой robots.txt, или null
+    private String getAllowedUrl(String url, UrlCanonicalizer canonicalizer, RobotsRules robotsRules) {
+        String canonicalUrl = canonicalizer.canonicalize(url);
+        if (canonicalUrl == null || !canonicalizer.isInternal(canonicalUrl)) {
+            return null;
+        }
+        String path = canonicalUrl.substring(canonicalizer.getSitePrefix().length() - 1);
+        return robotsRules.isAllowed(path) ? canonicalUrl : null;
+    }
+
+    private Connection getConnection(String url, int maxBodySize) {
+        return Jsoup.connect(url)
+                .userAgent(configConnection.getUserAgent())
+                .referrer(configConnection.getReferer())
+                .timeout(configConnection.getTimeout())
+                .ignoreContentType(true)
+                .maxBodySize(maxBodySize);
+    }
+
+    private record CachedRobots(RobotsRules rules, Instant loadedAt) {
+    }
+
+    //Поток, который прерывает чтение исключением, когда прочитано больше maxSize байт
+    private static class LimitedInputStream extends FilterInputStream {
+        private final long maxSize;
+        private long count;
+
+        LimitedInputStream(InputStream input, long maxSize) {
+            super(input);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value >= 0) {
+                count(1);
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count(read);
+            }
+            return read;
+        }
+
+        private void count(int read) throws IOException {
+            count += read;
+            if (count > maxSize) {
+                throw new IOException("Распакованный sitemap больше " + maxSize + " байт");
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package searchengine.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import searchengine.config.DuplicateConfig;
+import searchengine.model.Page;
+import searchengine.repository.PageRepository;
+import searchengine.service.DuplicateService;
+import searchengine.util.SimHash;
+import searchengine.util.SimHashIndex;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Поиск почти дубликатов по SimHash лемм страницы. Отпечатки оригиналов каждого сайта держатся
+ * в памяти в {@link SimHashIndex} и при первом обращении загружаются из таблицы page.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DuplicateServiceImpl implements DuplicateService {
+    private final DuplicateConfig duplicateConfig;
+    private final PageRepository pageRepository;
+    private final Map<Integer, SimHashIndex> indexBySite = new ConcurrentHashMap<>();
+
+    @Override
+    public Optional<Integer> registerPage(Page page, Map<String, Integer> lemmas) {
+        if (!duplicateConfig.isEnabled() || lemmas.size() < duplicateConfig.getMinLemmas()) {
+            return Optional.empty();
+        }
+        long hash = SimHash.of(lemmas);
+        SimHashIndex index = indexBySite.computeIfAbsent(page.getSite().getId(), this::loadIndex);
+        OptionalInt original;
+        synchronized (index) {
+            index.remove(page.getId());
+            original = index.findNear(hash);
+            if (original.isEmpty()) {
+                index.add(hash, page.getId());
+            }
+        }
+        Integer duplicateOf = original.isPresent() ? original.getAsInt() : null;
+        page.setSimHash(hash);
+        page.setDuplicateOf(duplicateOf);
+        pageRepository.updateSimHash(page.getId(), hash, duplicateOf);
+        if (duplicateOf != null) {
+            log.debug("Страница {} - почти дубликат страницы ID={}", page.getPath(), duplicateOf);
+        }
+        return Optional.ofNullable(duplicateOf);
+    }
+
+    @Override
+    public boolean isSkipDuplicates() {
+        return duplicateConfig.isEnabled() && duplicateConfig.getMode() == DuplicateConfig.Mode.SKIP;
+    }
+
+    @Override
+    public void clear() {
+        indexBySite.clear();
+    }
+
+    private SimHashIndex loadIndex(Integer siteId) {
+        SimHashIndex index = new SimHashIndex(duplicateConfig.getMaxDistance());
+        for (Object[] row : pageRepository.findSimHashesBySiteId(siteId)) {
+            index.add((Long) row[1], (Integer) row[0]);
+        }
+        log.debug("Загружено отпечатков SimHash сайта ID={}: {}", siteId, index.size());
+        return index;
+    }
+}
@@ -0,0 +1,71 @@
+package searchengine.service.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Контрольная точка обхода сайта на диске: снимок очереди (site-{id}.frontier) и дописываемый
+ * журнал изменений после снимка (site-{id}.journal). Журнал сбрасывается на диск при каждой
+ * записи, поэтому после падения JVM теряются только изменения с последней контрольной точки.
+ * Когда журнал вырастает больше COMPACT_JOURNAL_SIZE, он заменяется новым снимком.
+ */
+public class FrontierCheckpoint {
+    private static final long COMPACT_JOURNAL_SIZE = 16L * 1024 * 1024;
+
+    private final Path snapshotFile;
+    private final Path journalFile;
+    private boolean closed;
+
+    public FrontierCheckpoint(Path directory, int siteId) {
+        this.snapshotFile = directory.resolve("site-" + siteId + ".frontier");
+        this.journalFile = directory.resolve("site-" + siteId + ".journal");
+    }
+
+    public boolean exists() {
+        return Files.exists(snapshotFile) || Files.exists(journalFile);
+    }
+
+    public synchronized void restore(CrawlFrontier frontier) throws IOException {
+        if (Files.exists(snapshotFile)) {
+            frontier.load(snapshotFile);
+        }
+        if (Files.exists(journalFile)) {
+            frontier.replayJournal(journalFile);
+        }
+    }
+
+    public synchronized void write(CrawlFrontier frontier) throws IOException {
+        if (closed) {
+            return;
+        }
+        byte[] records = frontier.drainJournal();
+        if (records.length > 0) {
+            Files.createDirectories(journalFile.toAbsolutePath().getParent());
+            try (FileChannel channel = FileChannel.open(journalFile,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                ByteBuffer buffer = ByteBuffer.wrap(records);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            }
+        }
+        if (Files.exists(journalFile) && Files.size(journalFile) > COMPACT_JOURNAL_SIZE) {
+            //Снимок содержит всё, что есть в журнале; если сбой случится до удаления журнала,
+            //его повтор поверх снимка ничего не испортит
+            frontier.save(snapshotFile);
+            Files.deleteIfExists(journalFile);
+        }
+    }
+
+    //Обход завершён: контрольная точка больше не нужна, отложенные записи игнорируются
+    public synchronized void delete() throws IOException {
+        closed = true;
+        Files.deleteIfExists(journalFile);
+        Files.deleteIfExists(snapshotFile);
+    }
+}
@@ -0,0 +1,257 @@
+package searchengine.service.impl;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import searchengine.config.ConfigConnection;
+import searchengine.config.CrawlerConfig;
+import searchengine.dto.index.FetchResult;
+import searchengine.service.PageFetcher;
+
+import java.io.*;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Загрузка страниц через {@link HttpClient}: асинхронно, с HTTP/2 там, где сервер его поддерживает,
+ * и с переиспользованием keep-alive соединений к одному хосту (пул соединений клиента общий для
+ * всех обходов). Тело читается потоково и не больше maxBodySize байт, тела не-HTML ответов
+ * и ответов с кодом, отличным от 200, не загружаются.
+ */
+@Slf4j
+@Service
+public class HttpClientPageFetcher implements PageFetcher {
+    private static final List<String> HTML_TYPES = List.of("text/html", "application/xhtml+xml");
+
+    private final ConfigConnection configConnection;
+    private final CrawlerConfig crawlerConfig;
+    private final HttpClient httpClient;
+    private final MeterRegistry meterRegistry;
+
+    public HttpClientPageFetcher(ConfigConnection configConnection, CrawlerConfig crawlerConfig,
+                                 MeterRegistry meterRegistry) {
+        this.configConnection = configConnection;
+        this.crawlerConfig = crawlerConfig;
+        this.meterRegistry = meterRegistry;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofMillis(configConnection.getTimeout()))
+                .build();
+    }
+
+    @Override
+    public CompletableFuture<FetchResult> fetchAsync(String url) {
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(URI.create(url))
+                    .timeout(Duration.ofMillis(configConnection.getTimeout()))
+                    .header("User-Agent", configConnection.getUserAgent())
+                    .header("Referer", configConnection.getReferer())
+                    .header("Accept", "text/html,application/xhtml+xml;q=0.9,*/*;q=0.1")
+                    .header("Accept-Encoding", "gzip, deflate")
+                    .GET()
+                    .build();
+        } catch (IllegalArgumentException ex) {
+            return CompletableFuture.failedFuture(new MalformedURLException(ex.getMessage()));
+        }
+        long start = System.nanoTime();
+        return httpClient.sendAsync(request, this::createBodySubscriber)
+                .thenApply(this::toFetchResult)
+                .whenComplete((result, error) -> recordFetch(start, result));
+    }
+
+    //Время загрузки по коду ответа; неудачные запросы учитываются с кодом "error"
+    private void recordFetch(long start, FetchResult result) {
+        String status = result != null ? String.valueOf(result.getStatusCode()) : "error";
+        meterRegistry.timer("crawler.fetch", "status", status).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public FetchResult fetch(String url) throws IOException {
+        try {
+            return fetchAsync(url).get();
+        } catch (ExecutionException ex) {
+            throw unwrap(ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Загрузка страницы прервана: " + url);
+        }
+    }
+
+    public static IOException unwrap(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause instanceof IOException ioException ? ioException : new IOException(cause);
+    }
+
+    private HttpResponse.BodySubscriber<LimitedBody> createBodySubscriber(HttpResponse.ResponseInfo info) {
+        String contentType = info.headers().firstValue("Content-Type").orElse("");
+        boolean loadBody = info.statusCode() == 200 && isHtml(contentType);
+        return new LimitedBodySubscriber(loadBody ? crawlerConfig.getMaxBodySize() : 0);
+    }
+
+    private FetchResult toFetchResult(HttpResponse<LimitedBody> response) {
+        String contentType = response.headers().firstValue("Content-Type").orElse("");
+        String encoding = response.headers().firstValue("Content-Encoding").orElse("");
+        LimitedBody body = response.body();
+        if (body.bytes.length > 0 && !encoding.isBlank() && !encoding.equalsIgnoreCase("identity")) {
+            try {
+                body = decompress(body, encoding.trim().toLowerCase(Locale.ROOT));
+            } catch (IOException ex) {
+                //не распаковано ни одного байта: сжатые байты не должны попасть в page_content как HTML
+                log.debug("Не удалось распаковать ответ {}: {}", response.uri(), ex.getMessage());
+                throw new CompletionException(ex);
+            }
+        }
+        return new FetchResult(response.statusCode(), response.uri().toString(), contentType,
+                body.bytes, getCharset(contentType), body.truncated);
+    }
+
+    private LimitedBody decompress(LimitedBody body, String encoding) throws IOException {
+        return switch (encoding) {
+            case "gzip", "x-gzip" -> inflate(body, () -> new GZIPInputStream(new ByteArrayInputStream(body.bytes)));
+            case "deflate" -> {
+                try {
+                    yield inflate(body, () -> new InflaterInputStream(new ByteArrayInputStream(body.bytes)));
+                } catch (ZipException ex) {
+                    //часть серверов отдаёт deflate без заголовка zlib
+                    yield inflate(body, () -> new InflaterInputStream(new ByteArrayInputStream(body.bytes), new Inflater(true)));
+                }
+            }
+            default -> body;
+        };
+    }
+
+    /**
+     * Распаковка порциями, не больше maxBodySize байт. Сжатый поток, обрезанный по лимиту или
+     * повреждённый, распаковывается до места обрыва, и уже распакованный текст сохраняется.
+     * Если не распаковано ничего, выбрасывается ZipException.
+     */
+    private LimitedBody inflate(LimitedBody body, StreamOpener opener) throws IOException {
+        int maxSize = crawlerConfig.getMaxBodySize();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        boolean truncated = body.truncated;
+        try (InputStream input = opener.open()) {
+            int read;
+            while ((read = input.read(buffer, 0, Math.min(buffer.length, maxSize - output.size()))) > 0) {
+                output.write(buffer, 0, read);
+            }
+            if (output.size() >= maxSize && input.read() != -1) {
+                truncated = true;
+            }
+        } catch (EOFException | ZipException ex) {
+            if (output.size() == 0) {
+                throw ex instanceof ZipException zipException ? zipException : new ZipException(ex.getMessage());
+            }
+            truncated = true;
+        }
+        return new LimitedBody(output.toByteArray(), truncated);
+    }
+
+    private interface StreamOpener {
+        InputStream open() throws IOException;
+    }
+
+    private static boolean isHtml(String contentType) {
+        String type = contentType.toLowerCase(Locale.ROOT);
+        return type.isEmpty() || HTML_TYPES.stream().anyMatch(type::startsWith);
+    }
+
+    private static String getCharset(String contentType) {
+        for (String parameter : contentType.split(";")) {
+            String trimmed = parameter.trim();
+            if (trimmed.toLowerCase(Locale.ROOT).startsWith("charset=")) {
+                return trimmed.substring("charset=".length()).replace("\"", "").trim();
+            }
+        }
+        return null;
+    }
+
+    private static class LimitedBody {
+        private final byte[] bytes;
+        private final boolean truncated;
+
+        LimitedBody(byte[] bytes, boolean truncated) {
+            this.bytes = bytes;
+            this.truncated = truncated;
+        }
+    }
+
+    //Накапливает тело ответа до maxSize байт, затем отменяет подписку, не дочитывая ответ
+    private static class LimitedBodySubscriber implements HttpResponse.BodySubscriber<LimitedBody> {
+        private final int maxSize;
+        private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        private final CompletableFuture<LimitedBody> result = new CompletableFuture<>();
+        private Flow.Subscription subscription;
+
+        LimitedBodySubscriber(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        public CompletionStage<LimitedBody> getBody() {
+            return result;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (maxSize <= 0) {
+                subscription.cancel();
+                result.complete(new LimitedBody(new byte[0], false));
+                return;
+            }
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            if (result.isDone()) {
+                return;
+            }
+            for (ByteBuffer item : items) {
+                int allowed = maxSize - output.size();
+                int length = Math.min(item.remaining(), allowed);
+                byte[] chunk = new byte[length];
+                item.get(chunk);
+                output.write(chunk, 0, length);
+                if (item.hasRemaining()) {
+                    subscription.cancel();
+                    result.complete(new LimitedBody(output.toByteArray(), true));
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            result.complete(new LimitedBody(output.toByteArray(), false));
+        }
+    }
+}
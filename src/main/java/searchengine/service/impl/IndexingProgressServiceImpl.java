@@ -0,0 +1,163 @@
+package searchengine.service.impl;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import searchengine.config.CrawlerConfig;
+import searchengine.dto.statistic.SiteProgress;
+import searchengine.model.Site;
+import searchengine.service.IndexingProgressService;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+
+/**
+ * Ход индексации для подписчиков SSE. Счётчики обхода ведутся в памяти и рассылаются событием
+ * "progress" не чаще раза в progressIntervalMillis и только если что-то изменилось, поэтому частота
+ * событий не зависит от скорости обхода и не нагружает БД. Смена статуса сайта отправляется
+ * событием "status" сразу.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IndexingProgressServiceImpl implements IndexingProgressService {
+    private static final long EMITTER_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(30);
+
+    private final CrawlerConfig crawlerConfig;
+    private final Map<Integer, SiteState> sites = new ConcurrentHashMap<>();
+    private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean changed = new AtomicBoolean();
+
+    private ScheduledExecutorService publisher;
+
+    @PostConstruct
+    public void init() {
+        publisher = Executors.newSingleThreadScheduledExecutor();
+        long interval = crawlerConfig.getProgressIntervalMillis();
+        publisher.scheduleWithFixedDelay(this::publishProgress, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        publisher.shutdownNow();
+        emitters.forEach(SseEmitter::complete);
+    }
+
+    @Override
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(EMITTER_TIMEOUT_MILLIS);
+        emitter.onCompletion(() -> emitters.remove(emitter));
+        emitter.onTimeout(() -> emitters.remove(emitter));
+        emitter.onError(ex -> emitters.remove(emitter));
+        emitters.add(emitter);
+        //Новый подписчик сразу получает текущее состояние
+        send(emitter, "progress", getProgress());
+        return emitter;
+    }
+
+    @Override
+    public void siteStarted(Site site, IntSupplier queueSize) {
+        SiteState state = new SiteState(site);
+        state.queueSize = queueSize;
+        sites.put(site.getId(), state);
+        changed.set(true);
+    }
+
+    @Override
+    public void pageFetched(int siteId, int statusCode) {
+        SiteState state = sites.get(siteId);
+        if (state == null) {
+            return;
+        }
+        state.pagesFetched.incrementAndGet();
+        if (statusCode != 200) {
+            state.errors.incrementAndGet();
+        }
+        changed.set(true);
+    }
+
+    @Override
+    public void siteStatusChanged(Site site) {
+        SiteState state = sites.computeIfAbsent(site.getId(), id -> new SiteState(site));
+        state.update(site);
+        //Обход закончен, очередь больше не нужна
+        state.queueSize = null;
+        SiteProgress progress = state.toProgress();
+        emitters.forEach(emitter -> send(emitter, "status", progress));
+    }
+
+    @Override
+    public void clear() {
+        sites.clear();
+        changed.set(true);
+    }
+
+    private void publishProgress() {
+        if (emitters.isEmpty() || !changed.getAndSet(false)) {
+            return;
+        }
+        List<SiteProgress> progress = getProgress();
+        emitters.forEach(emitter -> send(emitter, "progress", progress));
+    }
+
+    private List<SiteProgress> getProgress() {
+        return sites.values().stream()
+                .map(SiteState::toProgress)
+                .toList();
+    }
+
+    //Отключившийся клиент удаляется из подписчиков
+    private void send(SseEmitter emitter, String name, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data));
+        } catch (IOException | IllegalStateException ex) {
+            log.debug("Подписчик хода индексации отключён: {}", ex.getMessage());
+            emitters.remove(emitter);
+        }
+    }
+
+    private static class SiteState {
+        private final String url;
+        private final String name;
+        private final AtomicInteger pagesFetched = new AtomicInteger();
+        private final AtomicInteger errors = new AtomicInteger();
+        private volatile IntSupplier queueSize;
+        private volatile String status;
+        private volatile long statusTime;
+        private volatile String error;
+
+        private SiteState(Site site) {
+            this.url = site.getUrl();
+            this.name = site.getName();
+            update(site);
+        }
+
+        private void update(Site site) {
+            status = String.valueOf(site.getStatus());
+            statusTime = site.getStatusTime() != null ? site.getStatusTime().getTime() : System.currentTimeMillis();
+            error = site.getLastError();
+        }
+
+        private SiteProgress toProgress() {
+            SiteProgress progress = new SiteProgress();
+            progress.setUrl(url);
+            progress.setName(name);
+            progress.setStatus(status);
+            progress.setStatusTime(statusTime);
+            progress.setError(error);
+            progress.setPagesFetched(pagesFetched.get());
+            IntSupplier queue = queueSize;
+            progress.setQueueSize(queue != null ? queue.getAsInt() : 0);
+            progress.setErrors(errors.get());
+            return progress;
+        }
+    }
+}
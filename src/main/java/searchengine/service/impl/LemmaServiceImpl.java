@@ -1,38 +1,54 @@
 package searchengine.service.impl;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.lucene.morphology.LuceneMorphology;
 import org.apache.lucene.morphology.WrongCharaterException;
-import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
 import org.jsoup.Jsoup;
 import org.springframework.stereotype.Service;
 import searchengine.service.LemmaService;
+import searchengine.util.Morphologies;
 
-import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+/**
+ * Лемматизация русских и английских слов. Текст разбивается на слова один раз, а каждое слово
+ * передаётся морфологии своего языка по алфавиту букв: кириллица - русской, латиница - английской,
+ * слова со смешанными буквами не индексируются. Леммы обоих языков кэшируются в общем кэше.
+ * Сервис вызывается одновременно потоками обхода: словари морфологии общие и только читаются
+ * (см. {@link Morphologies}), а буфер разбора текста у каждого потока свой.
+ */
 @Service
 @Slf4j
 public class LemmaServiceImpl implements LemmaService {
-    private static final Set<String> FUNCTIONAL_POS = Set.of("МЕЖД", "ПРЕДЛ", "СОЮЗ", "ЧАСТ");
+    //Буфер для сборки слова при разборе текста, свой у каждого потока
+    private static final ThreadLocal<StringBuilder> WORD_BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(64));
+    private static final int MIN_WORD_LENGTH = 2;
+    //При переполнении кэш очищается целиком: часто встречающиеся слова быстро попадают в него снова
+    private static final int MAX_CACHE_SIZE = 500_000;
 
-    private final LuceneMorphology luceneMorphology;
+    private final Map<String, String> lemmaCache = new ConcurrentHashMap<>();
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
 
-    public LemmaServiceImpl() {
-        try {
-            this.luceneMorphology = new RussianLuceneMorphology();
-        } catch (IOException e) {
-            throw new RuntimeException("Не удалось инициализировать RussianLuceneMorphology", e);
-        }
+    public LemmaServiceImpl(MeterRegistry meterRegistry) {
+        this.cacheHits = meterRegistry.counter("lemma.cache", "result", "hit");
+        this.cacheMisses = meterRegistry.counter("lemma.cache", "result", "miss");
+        meterRegistry.gaugeMapSize("lemma.cache.size", List.of(), lemmaCache);
     }
 
     @Override
     public Map<String, Integer> getLemmasFromText(String html) {
-        String rawText = Jsoup.parse(html).text();
+        return getLemmasFromPlainText(Jsoup.parse(html).text());
+    }
 
-        return Arrays.stream(getPreparedWordsArray(rawText))
-                .filter(this::isValidWord)
+    @Override
+    public Map<String, Integer> getLemmasFromPlainText(String rawText) {
+        return getPreparedWords(rawText).stream()
                 .map(this::getLemmaByWord)
                 .filter(lemma -> !lemma.isEmpty())
                 .collect(Collectors.toMap(
@@ -42,21 +58,55 @@ public class LemmaServiceImpl implements LemmaService {
                 ));
     }
 
+    @Override
+    public Map<String, List<Integer>> getLemmaPositions(String rawText) {
+        List<String> words = getPreparedWords(rawText);
+        Map<String, List<Integer>> positions = new LinkedHashMap<>();
+        for (int i = 0; i < words.size(); i++) {
+            String lemma = getLemmaByWord(words.get(i));
+            if (!lemma.isEmpty()) {
+                positions.computeIfAbsent(lemma, key -> new ArrayList<>()).add(i);
+            }
+        }
+        return positions;
+    }
+
     @Override
     public String getLemmaByWord(String word) {
+        if (word == null || word.length() < MIN_WORD_LENGTH) {
+            return "";
+        }
+        String normalized = word.toLowerCase(Locale.ROOT);
+        String cached = lemmaCache.get(normalized);
+        if (cached != null) {
+            cacheHits.increment();
+            return cached;
+        }
+        cacheMisses.increment();
+        String lemma = lemmatize(normalized);
+        if (lemmaCache.size() >= MAX_CACHE_SIZE) {
+            lemmaCache.clear();
+        }
+        lemmaCache.put(normalized, lemma);
+        return lemma;
+    }
+
+    private String lemmatize(String word) {
         log.debug("Обрабатывается слово: '{}'", word);
-        if (isWrongWord(word)) {
+        Language language = detectLanguage(word);
+        if (language == null) {
             log.debug("Слово отклонено по критериям валидности");
             return "";
         }
+        LuceneMorphology morphology = language.morphology.get();
         try {
-            List<String> normalWordForms = luceneMorphology.getNormalForms(word);
+            List<String> normalWordForms = morphology.getNormalForms(word);
             if (normalWordForms == null || normalWordForms.isEmpty()) {
                 return "";
             }
 
-            String wordInfo = luceneMorphology.getMorphInfo(word).toString();
-            if (isFunctionalPartOfSpeech(wordInfo)) {
+            List<String> wordInfo = morphology.getMorphInfo(word);
+            if (isFunctionalPartOfSpeech(wordInfo, language)) {
                 return "";
             }
             return normalWordForms.get(0);
@@ -66,27 +116,77 @@ public class LemmaServiceImpl implements LemmaService {
         }
     }
 
-    private String[] getPreparedWordsArray(String rawText) {
-        String rgx = "[^a-яё\\-']+"; //Для разбиения текста на слова по всему, что не является буквами
-        String cleaned = rawText.toLowerCase().replaceAll(rgx, " ");
-        return cleaned.trim().split("\\s+");
+    //Слова текста в нижнем регистре: последовательности русских и латинских букв, дефисов и апострофов
+    private List<String> getPreparedWords(String rawText) {
+        List<String> words = new ArrayList<>();
+        StringBuilder word = WORD_BUFFER.get();
+        word.setLength(0);
+        for (int i = 0; i < rawText.length(); i++) {
+            char c = Character.toLowerCase(rawText.charAt(i));
+            if (isLetter(c) || c == '-' || c == '\'') {
+                word.append(c);
+            } else if (!word.isEmpty()) {
+                words.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        if (!word.isEmpty()) {
+            words.add(word.toString());
+        }
+        return words;
     }
 
-    private boolean isWrongWord(String word) {
-        if(word == null || word.isEmpty()) {
-            return true;
+    //Язык слова по его буквам; null, если слово начинается не с буквы или буквы из разных алфавитов
+    private Language detectLanguage(String word) {
+        if (!isLetter(word.charAt(0))) {
+            return null;
+        }
+        boolean cyrillic = false;
+        boolean latin = false;
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if ((c >= 'а' && c <= 'я') || c == 'ё') {
+                cyrillic = true;
+            } else if (c >= 'a' && c <= 'z') {
+                latin = true;
+            } else if (c != '-' && c != '\'') {
+                return null;
+            }
+        }
+        if (cyrillic == latin) {
+            return null;
         }
-        // Проверяем, что слово содержит только кириллические буквы и длину ≥ 2
-        return  !word.matches("^[а-яА-ЯёЁ][а-яА-ЯёЁ\\-']*$") || word.length() < 2;
+        return cyrillic ? Language.RUSSIAN : Language.ENGLISH;
     }
 
-    private boolean isValidWord(String word) {
-        return !isWrongWord(word);
+    private boolean isLetter(char c) {
+        return (c >= 'а' && c <= 'я') || c == 'ё' || (c >= 'a' && c <= 'z');
     }
 
-    private boolean isFunctionalPartOfSpeech(String wordInfo) {
+    //Морфологическая информация имеет вид "слово|код ЧАСТЬ_РЕЧИ ...", сравниваются пометы после слова
+    private boolean isFunctionalPartOfSpeech(List<String> wordInfo, Language language) {
+        for (String info : wordInfo) {
+            String tags = info.substring(info.indexOf('|') + 1).toUpperCase(Locale.ROOT);
+            for (String tag : tags.split("\\s+")) {
+                if (language.functionalPos.contains(tag)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
 
-        return FUNCTIONAL_POS.stream()
-                .anyMatch(pos -> wordInfo.toUpperCase().contains(pos));
+    private enum Language {
+        RUSSIAN(Morphologies::russian, Set.of("МЕЖД", "ПРЕДЛ", "СОЮЗ", "ЧАСТ")),
+        ENGLISH(Morphologies::english, Set.of("INT", "PREP", "CONJ", "ARTICLE", "PART"));
+
+        //Словарь загружается при первом слове этого языка
+        private final Supplier<LuceneMorphology> morphology;
+        private final Set<String> functionalPos;
+
+        Language(Supplier<LuceneMorphology> morphology, Set<String> functionalPos) {
+            this.morphology = morphology;
+            this.functionalPos = functionalPos;
+        }
     }
-}
\ No newline at end of file
+}
@@ -1,93 +1,175 @@
 package searchengine.service.impl;
 
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
-import org.jsoup.Connection;
-import org.jsoup.HttpStatusException;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.select.Elements;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.transaction.annotation.Transactional;
-import searchengine.config.ConfigConnection;
+import searchengine.config.CrawlerConfig;
+import searchengine.dto.index.ExtractedPage;
+import searchengine.dto.index.FetchResult;
+import searchengine.dto.index.SitemapUrl;
 import searchengine.model.Page;
+import searchengine.model.PageContent;
 import searchengine.model.Site;
+import searchengine.repository.PageContentRepository;
 import searchengine.repository.PageRepository;
+import searchengine.service.IndexingProgressService;
+import searchengine.service.PageFetcher;
 import searchengine.service.PageIndexerService;
+import searchengine.service.SiteStatsService;
+import searchengine.util.HtmlTextExtractor;
+import searchengine.util.RobotsRules;
+import searchengine.util.UrlCanonicalizer;
 import searchengine.util.UrlValidator;
 
 import javax.net.ssl.SSLHandshakeException;
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.Charset;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
+/**
+ * Обход сайта: адреса берутся из {@link CrawlFrontier} в порядке приоритета и загружаются
+ * асинхронно (не больше maxConnections запросов к сайту одновременно), а загруженные страницы
+ * разбираются и индексируются потоками-обработчиками, найденные ссылки добавляются в очередь.
+ */
 @Slf4j
-@RequiredArgsConstructor
-public class PageFinder extends RecursiveAction {
-    private static final String MASK = "[^#?.]+";
+public class PageFinder {
+    private static final double RECENT_SITEMAP_BONUS = 0.5;
+    private static final Duration RECENT_SITEMAP_PERIOD = Duration.ofDays(30);
 
     private final Site site;
     private final PageRepository pageRepository;
+    private final PageContentRepository pageContentRepository;
     private final PageIndexerService pageIndexerService;
     private final AtomicBoolean indexingProcessing;
-    private final ConfigConnection configConnection;
-    private final String urlPage;
-    private final Set<String> visitedLinks;
-    private final String mask;
+    private final PageFetcher pageFetcher;
+    private final RobotsRules robotsRules;
+    private final CrawlFrontier frontier;
+    private final CrawlerConfig crawlerConfig;
+    private final SiteStatsService siteStatsService;
+    private final IndexingProgressService indexingProgressService;
+    private final UrlCanonicalizer urlCanonicalizer;
+    private final Timer parseTimer;
+    private final Timer pageTimer;
+    //Время, раньше которого нельзя делать следующий запрос к сайту при заданном Crawl-delay
+    private final AtomicLong nextFetchTime = new AtomicLong();
 
     public PageFinder(Site site,
                       PageRepository pageRepository,
-                      ConfigConnection configConnection,
+                      PageContentRepository pageContentRepository,
+                      PageFetcher pageFetcher,
                       PageIndexerService pageIndexerService,
-                      AtomicBoolean indexingProcessing) {
-        String url = site.getUrl();
-        this.pageRepository = pageRepository;
-        this.urlPage = url;
-        this.configConnection = configConnection;
-        this.indexingProcessing = indexingProcessing;
+                      AtomicBoolean indexingProcessing,
+                      RobotsRules robotsRules,
+                      CrawlFrontier frontier,
+                      CrawlerConfig crawlerConfig,
+                      SiteStatsService siteStatsService,
+                      IndexingProgressService indexingProgressService,
+                      MeterRegistry meterRegistry) {
         this.site = site;
+        this.pageRepository = pageRepository;
+        this.pageContentRepository = pageContentRepository;
+        this.pageFetcher = pageFetcher;
         this.pageIndexerService = pageIndexerService;
-        this.mask = url + MASK;
-        this.visitedLinks = ConcurrentHashMap.newKeySet();
-    }
-
-    private PageFinder(PageFinder pageFinder, String url) {
-        this.site = pageFinder.site;
-        this.pageRepository = pageFinder.pageRepository;
-        this.urlPage = url;
-        this.configConnection = pageFinder.configConnection;
-        this.indexingProcessing = pageFinder.indexingProcessing;
-        this.pageIndexerService = pageFinder.pageIndexerService;
-        this.mask = pageFinder.mask;
-        this.visitedLinks = pageFinder.visitedLinks;
+        this.indexingProcessing = indexingProcessing;
+        this.robotsRules = robotsRules;
+        this.frontier = frontier;
+        this.crawlerConfig = crawlerConfig;
+        this.siteStatsService = siteStatsService;
+        this.indexingProgressService = indexingProgressService;
+        this.urlCanonicalizer = new UrlCanonicalizer(site.getUrl(), crawlerConfig.getStrippedQueryParams());
+        this.parseTimer = meterRegistry.timer("crawler.parse");
+        this.pageTimer = meterRegistry.timer("crawler.page");
     }
 
-    @Override
-    protected void compute() {
-        if(!indexingProcessing.get()) {
-            return;
+    /**
+     * Обходит сайт: не больше maxConnectionsPerSite запросов к сайту в полёте, обработка ответов
+     * в threads потоков. Пустая очередь заполняется главной страницей и адресами из sitemap;
+     * восстановленная из файла очередь продолжается как есть.
+     */
+    public void crawlSite(List<SitemapUrl> sitemapUrls) throws InterruptedException {
+        int maxConnections = crawlerConfig.getMaxConnectionsPerSite();
+        if (frontier.isEmpty()) {
+            frontier.add(urlCanonicalizer.getSitePrefix(), 0, 1.0);
+            seedFromSitemap(sitemapUrls);
         }
-        if(!visitedLinks.add(urlPage)) {
-            return;
+        ExecutorService workers = Executors.newFixedThreadPool(crawlerConfig.getThreads());
+        ScheduledExecutorService politeness = Executors.newSingleThreadScheduledExecutor();
+        Semaphore connections = new Semaphore(maxConnections);
+        try {
+            CrawlFrontier.FrontierUrl next;
+            while ((next = frontier.next(indexingProcessing)) != null) {
+                connections.acquire();
+                waitForCrawlDelay();
+                CrawlFrontier.FrontierUrl frontierUrl = next;
+                log.debug("crawl url {}", frontierUrl.getUrl());
+                long start = System.nanoTime();
+                pageFetcher.fetchAsync(frontierUrl.getUrl())
+                        .whenCompleteAsync((result, error) -> {
+                            boolean processed = false;
+                            try {
+                                processed = crawl(frontierUrl, result, error);
+                            } catch (RuntimeException ex) {
+                                log.error("Ошибка обработки страницы {}", frontierUrl.getUrl(), ex);
+                                //повтор в этом же обходе ошибку не исправит; при остановке адрес вернётся в очередь
+                                processed = indexingProcessing.get();
+                            } finally {
+                                //полное время страницы: загрузка, ожидание обработчика, разбор и индексация
+                                pageTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                                //посещённым адрес считается только после сохранения и индексации страницы,
+                                //незавершённый при остановке адрес возвращается в очередь и попадёт в контрольную точку
+                                if (processed) {
+                                    frontier.done(frontierUrl);
+                                } else {
+                                    frontier.release(frontierUrl);
+                                }
+                                //соединение освобождается после паузы, чтобы не перегружать сайт
+                                politeness.schedule(connections::release, getPauseMillis(), TimeUnit.MILLISECONDS);
+                            }
+                        }, workers);
+            }
+            //дождаться обработки уже отправленных запросов
+            connections.acquire(maxConnections);
+        } finally {
+            workers.shutdownNow();
+            politeness.shutdownNow();
         }
-        Set<PageFinder> subTasks = new HashSet<>();
-        crawl(subTasks);
-        for (PageFinder task : subTasks) {
-            if (!indexingProcessing.get()) {
-                return;
+        log.info("Обход сайта {} завершён, загружено страниц: {}, в очереди: {}",
+                site.getUrl(), frontier.getVisitedCount(), frontier.getQueueSize());
+    }
+
+    //Приоритет адреса из sitemap: его priority и надбавка за недавнее изменение (lastmod)
+    private void seedFromSitemap(List<SitemapUrl> sitemapUrls) {
+        Instant recent = Instant.now().minus(RECENT_SITEMAP_PERIOD);
+        for (SitemapUrl sitemapUrl : sitemapUrls) {
+            String url = toCrawlUrl(sitemapUrl.getLoc());
+            if (url == null) {
+                continue;
+            }
+            double priority = sitemapUrl.getPriority();
+            if (sitemapUrl.getLastModified() != null && sitemapUrl.getLastModified().isAfter(recent)) {
+                priority += RECENT_SITEMAP_BONUS;
             }
-            task.join();
+            frontier.add(url, 1, priority);
         }
     }
 
-    public void crawl(Set<PageFinder> subTasks) {
-        pause(100, 300);
-        log.info("crawl url {}", urlPage);
+    //true, если обработка страницы завершена: страница сохранена и, если нужно, проиндексирована;
+    //false, если обход остановлен раньше
+    private boolean crawl(CrawlFrontier.FrontierUrl frontierUrl, FetchResult result, Throwable error) {
+        String urlPage = frontierUrl.getUrl();
         if (!indexingProcessing.get()) {
-            return;
+            return false;
         }
         Page indexingPage = new Page();
         indexingPage.setSite(site);
@@ -95,37 +177,71 @@ public class PageFinder extends RecursiveAction {
         try {
             String path = UrlValidator.getPath(urlPage);
             indexingPage.setPath(path);
-            Connection connection = getConnection(urlPage);
-            var response = connection.execute();
-            indexingPage.setAnswerCode(response.statusCode());
-            Document document = response.parse();
-            indexingPage.setPageContent(getContent(document));
-            Set<String> urlSet = getInnerLinks(document);
-
-            for (String url : urlSet) {
-                if(!indexingProcessing.get()) {
-                    return;
+            if (error != null) {
+                throw HttpClientPageFetcher.unwrap(error);
+            }
+            indexingPage.setAnswerCode(result.getStatusCode());
+            ExtractedPage extracted = extract(result, indexingPage);
+            if (extracted != null) {
+                for (String url : getInnerLinks(extracted)) {
+                    frontier.add(url, frontierUrl.getDepth() + 1, 0.0);
                 }
-                PageFinder task = new PageFinder(this, url);
-                task.fork();
-                subTasks.add(task);
             }
         } catch (Exception ex) {
             indexingPage.setAnswerCode(getErrorCodeFromException(ex));
             log.debug("ERROR INDEXATION, url:{}, code:{}, error:{}", urlPage, indexingPage.getAnswerCode(), ex.getMessage());
         }
+        indexingProgressService.pageFetched(site.getId(), indexingPage.getAnswerCode());
 
-        pageRepository.save(indexingPage);
-        if(shouldIndexPage(indexingPage)) {
-            log.info("Indexing page url: {}", urlPage);
-            pageIndexerService.index(indexingPage);
+        try {
+            pageRepository.save(indexingPage);
+        } catch (DataIntegrityViolationException ex) {
+            //Страница сохранена до остановки обхода, который продолжается из сохранённой очереди
+            return resumeSavedPage(indexingPage);
         }
+        siteStatsService.pageAdded(site.getId());
+        savePageContent(indexingPage, true);
+        return indexPage(indexingPage);
+    }
 
+    //Страница, сохранённая до остановки, могла остаться без индекса: тогда она индексируется заново
+    private boolean resumeSavedPage(Page page) {
+        Optional<Page> saved = pageRepository.getPageBySiteIdAndPath(site.getId(), page.getPath());
+        if (saved.isEmpty()) {
+            log.debug("Страница {} не сохранена", page.getPath());
+            return true;
+        }
+        page.setId(saved.get().getId());
+        if (!isIndexable(page) || pageIndexerService.isIndexed(page)) {
+            log.debug("Страница {} уже сохранена", page.getPath());
+            return true;
+        }
+        log.debug("Страница {} сохранена без индекса и индексируется повторно", page.getPath());
+        savePageContent(page, false);
+        return indexPage(page);
     }
 
-    @Transactional
-    public void refreshPage(String urlPage) {
+    private boolean indexPage(Page page) {
+        if (!isIndexable(page)) {
+            return true;
+        }
+        if (!indexingProcessing.get()) {
+            return false;
+        }
+        log.debug("Indexing page url: {}", page.getPath());
+        pageIndexerService.index(page);
+        return true;
+    }
 
+    /**
+     * Переиндексация одной страницы. Возвращает страницу и то, как изменились её строки индекса:
+     * по нему вызывающий код решает, нужен ли сегмент поверх индекса сайта.
+     */
+    @Transactional
+    public RefreshedPage refreshPage(String url) {
+        //путь берётся из канонического адреса, как при обходе, чтобы обновлялась та же строка page
+        String canonicalUrl = urlCanonicalizer.canonicalize(url);
+        String urlPage = canonicalUrl != null ? canonicalUrl : url;
         Page refreshPage = new Page();
         refreshPage.setSite(site);
         String path = UrlValidator.getPath(urlPage);
@@ -135,70 +251,105 @@ public class PageFinder extends RecursiveAction {
         try {
             Optional<Page> result = pageRepository.getPageBySiteIdAndPath(site.getId(), path);
             result.ifPresent(page -> refreshPage.setId(page.getId()));
-            Connection connection = getConnection(urlPage);
-            var response = connection.execute();
-            refreshPage.setAnswerCode(response.statusCode());
-            Document doc = response.parse();
-            refreshPage.setPageContent(getContent(doc));
+            FetchResult response = pageFetcher.fetch(urlPage);
+            refreshPage.setAnswerCode(response.getStatusCode());
+            extract(response, refreshPage);
         } catch (Exception ex) {
             log.info("urlPage exception: {} message: {}", urlPage, ex.getMessage());
             refreshPage.setAnswerCode(getErrorCodeFromException(ex));
             log.debug("ERROR INDEXATION, url:{}, code:{}, error:{}", urlPage, refreshPage.getAnswerCode(), ex.getMessage());
         }
+        boolean isNewPage = refreshPage.getId() == null;
         pageRepository.save(refreshPage);
+        if (isNewPage) {
+            siteStatsService.pageAdded(site.getId());
+        }
+        savePageContent(refreshPage, isNewPage);
+        IndexChange indexChange = IndexChange.UNCHANGED;
         if(shouldIndexPage(refreshPage)) {
-            pageIndexerService.refreshIndex(refreshPage);
+            indexChange = pageIndexerService.refreshIndex(refreshPage) ? IndexChange.UPDATED : IndexChange.REMOVED;
         }
+        return new RefreshedPage(refreshPage, indexChange);
     }
 
-    private Set<String> getInnerLinks(Document document) {
-        Elements links = document.select("a[href]");
-        return links.stream()
-                .map(link -> link.attr("abs:href"))
-                .filter(this::isValidLink)
-                .collect(Collectors.toSet());
+    //UPDATED - строки индекса перезаписаны, REMOVED - удалены (пропущенный дубликат), UNCHANGED - не менялись
+    public enum IndexChange {
+        UPDATED, REMOVED, UNCHANGED
     }
 
-    private boolean shouldIndexPage(Page page) {
-        return page.getAnswerCode() == 200
-                && !page.getPageContent().isBlank()
-                && indexingProcessing.get();
+    public record RefreshedPage(Page page, IndexChange indexChange) {
+    }
+
+    //Содержимое новой страницы вставляется без предварительного SELECT, у существующей - обновляется
+    private void savePageContent(Page page, boolean isNewPage) {
+        if (page.getPageContent().isBlank()) {
+            return;
+        }
+        if (!isNewPage) {
+            Optional<PageContent> existing = pageContentRepository.findById(page.getId());
+            if (existing.isPresent()) {
+                existing.get().setHtml(page.getPageContent());
+                pageContentRepository.save(existing.get());
+                return;
+            }
+        }
+        pageContentRepository.save(new PageContent(page.getId(), page.getPageContent()));
     }
 
-    private Connection getConnection(String url) {
+    private Set<String> getInnerLinks(ExtractedPage extracted) {
+        return extracted.getLinks().stream()
+                .map(this::toCrawlUrl)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+    }
 
-        return Jsoup.connect(url)
-                .userAgent(configConnection.getUserAgent())
-                .referrer(configConnection.getReferer())
-                .timeout(configConnection.getTimeout())
-                .maxBodySize(0);
+    private boolean shouldIndexPage(Page page) {
+        return isIndexable(page) && indexingProcessing.get();
     }
 
-    private String getContent(Document document) {
-        return document.html();
+    private boolean isIndexable(Page page) {
+        return page.getAnswerCode() == 200 && !page.getPageContent().isBlank();
     }
 
-    private boolean isValidLink(String link) {
-        if (link.isBlank()) {
-            return false;
+    //Тело загружается только у HTML-страниц с кодом 200, у остальных ответов содержимого нет.
+    //Сохраняется исходный HTML, а в лемматизацию уходит текст, извлечённый без построения DOM
+    private ExtractedPage extract(FetchResult result, Page page) throws IOException {
+        if (result.getBody().length == 0) {
+            return null;
         }
-        if (!UrlValidator.isInternalUrl(link, site.getUrl())) {
-            return false;
+        if (result.isTruncated()) {
+            log.debug("Страница {} обрезана до {} байт", result.getUrl(), result.getBody().length);
         }
-        if (visitedLinks.contains(link)) {
-            return false;
+        long start = System.nanoTime();
+        Charset charset = HtmlTextExtractor.resolveCharset(result.getBody(), result.getCharset());
+        ExtractedPage extracted = HtmlTextExtractor.extract(result.getBody(), charset, result.getUrl(),
+                crawlerConfig.getMaxTextLength());
+        parseTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        //исходный HTML целиком нужен для page_content и сниппетов
+        page.setPageContent(new String(result.getBody(), charset));
+        page.setPageText(extracted.getText());
+        return extracted;
+    }
+
+    //Канонический адрес ссылки или null, если ссылка ведёт за пределы сайта или запрещена robots.txt
+    private String toCrawlUrl(String link) {
+        String url = urlCanonicalizer.canonicalize(link);
+        if (url == null || !urlCanonicalizer.isInternal(url)) {
+            return null;
+        }
+        if (!robotsRules.isAllowed(url.substring(urlCanonicalizer.getSitePrefix().length() - 1))) {
+            return null;
         }
 
-        return true;
+        return url;
     }
 
 
     private int getErrorCodeFromException(Exception e) {
-        if (e instanceof HttpStatusException) {
-            return ((HttpStatusException) e).getStatusCode();
-        } else if (e instanceof SSLHandshakeException) {
+        if (e instanceof SSLHandshakeException) {
             return 525;
-        } else if (e.getMessage().contains("timeout")) {
+        } else if (e instanceof HttpTimeoutException
+                || (e.getMessage() != null && e.getMessage().contains("timeout"))) {
             return 408;
         } else if (e instanceof MalformedURLException || e instanceof URISyntaxException) {
             return 404;
@@ -207,8 +358,26 @@ public class PageFinder extends RecursiveAction {
         }
     }
 
-    private void pause(int min, int max)  {
-        int duration = min + (int)(Math.random() * (max - min));
+    //При заданном Crawl-delay запросы к сайту отправляются не чаще Crawl-delay
+    private void waitForCrawlDelay() {
+        long crawlDelay = robotsRules.getCrawlDelayMillis();
+        if (crawlDelay <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long previous = nextFetchTime.getAndAccumulate(now, (next, current) -> Math.max(next, current) + crawlDelay);
+        sleep(Math.max(previous, now) - now);
+    }
+
+    //Без Crawl-delay каждое соединение делает случайную паузу между запросами
+    private long getPauseMillis() {
+        return robotsRules.getCrawlDelayMillis() > 0 ? 0 : 100 + (long) (Math.random() * 200);
+    }
+
+    private void sleep(long duration) {
+        if (duration <= 0) {
+            return;
+        }
         try {
             //log.info(Thread.currentThread().getName() + " sleeping for " + duration + " ms");
             Thread.sleep(duration);
@@ -217,4 +386,4 @@ public class PageFinder extends RecursiveAction {
             indexingProcessing.set(false);
         }
     }
-}
\ No newline at end of file
+}
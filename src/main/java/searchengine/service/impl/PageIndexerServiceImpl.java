@@ -1,7 +1,9 @@
 package searchengine.service.impl;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.jsoup.Jsoup;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -10,10 +12,13 @@ import searchengine.model.Lemma;
 import searchengine.model.Page;
 import searchengine.repository.IndexRepository;
 import searchengine.repository.LemmaRepository;
+import searchengine.service.DuplicateService;
 import searchengine.service.LemmaService;
 import searchengine.service.PageIndexerService;
+import searchengine.service.SiteStatsService;
+import searchengine.util.PositionCodec;
 
-import java.io.IOException;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -26,39 +31,64 @@ public class PageIndexerServiceImpl implements PageIndexerService {
     private final LemmaService lemmaService;
     private final LemmaRepository lemmaRepository;
     private final IndexRepository indexSearchRepository;
+    private final DuplicateService duplicateService;
+    private final SiteStatsService siteStatsService;
+    private final MeterRegistry meterRegistry;
 
     @Override
     public void index(Page indexingPage) {
-        String html = indexingPage.getPageContent();
         long start = System.currentTimeMillis();
-        try {
-            Map<String, Integer> lemmas = lemmaService.getLemmasFromText(html);
-            saveLemmasForPage(lemmas, indexingPage);
-            log.debug("Лемматизация страницы ID={} завершена за {} мс количество найденных лемм: {}", indexingPage.getId(), (System.currentTimeMillis() - start), lemmas.size());
-        } catch (IOException e) {
-            log.error("Ошибка при лемматизации страницы ID={}", indexingPage.getId(), e);
-            throw new RuntimeException(e);
+        Map<String, List<Integer>> positions = meterRegistry.timer("indexer.lemmatize").record(() -> getLemmaPositions(indexingPage));
+        Map<String, Integer> lemmas = countLemmas(positions);
+        if (isSkippedDuplicate(indexingPage, lemmas)) {
+            return;
         }
+        meterRegistry.timer("indexer.persist").record(() -> saveLemmasForPage(positions, indexingPage));
+        log.debug("Лемматизация страницы ID={} завершена за {} мс количество найденных лемм: {}", indexingPage.getId(), (System.currentTimeMillis() - start), lemmas.size());
     }
 
     @Override
     @Transactional
-    public void refreshIndex(Page refreshPage) {
-        String html = refreshPage.getPageContent();
+    public boolean refreshIndex(Page refreshPage) {
         long start = System.currentTimeMillis();
-        try {
-            Map<String, Integer> lemmas = lemmaService.getLemmasFromText(html);
-            //уменьшение frequency у лемм которые присутствуют на обновляемой странице
-            refreshLemma(refreshPage);
-            //удаление индекса
-            indexSearchRepository.deleteAllByPageId(refreshPage.getId());
-            //обновление лемм и индексов у обновленной страницы
-            saveLemmasForPage(lemmas, refreshPage);
-            log.debug("Лемматизация страницы обновлена за {} мс количество найденных лемм: {}", (System.currentTimeMillis() - start), lemmas.size());
-        } catch (IOException e) {
-            log.error("Ошибка при обновлении индекса страницы ID={}", refreshPage.getId(), e);
-            throw new RuntimeException("Не удалось проиндексировать страницу", e);
+        Map<String, List<Integer>> positions = meterRegistry.timer("indexer.lemmatize").record(() -> getLemmaPositions(refreshPage));
+        Map<String, Integer> lemmas = countLemmas(positions);
+        //уменьшение frequency у лемм которые присутствуют на обновляемой странице
+        refreshLemma(refreshPage);
+        //удаление индекса
+        indexSearchRepository.deleteAllByPageId(refreshPage.getId());
+        //обновление лемм и индексов у обновленной страницы
+        if (isSkippedDuplicate(refreshPage, lemmas)) {
+            return false;
         }
+        meterRegistry.timer("indexer.persist").record(() -> saveLemmasForPage(positions, refreshPage));
+        log.debug("Лемматизация страницы обновлена за {} мс количество найденных лемм: {}", (System.currentTimeMillis() - start), lemmas.size());
+        return true;
+    }
+
+    @Override
+    public boolean isIndexed(Page page) {
+        return indexSearchRepository.existsByPageId(page.getId());
+    }
+
+    //Текст, извлечённый при обходе, лемматизируется напрямую, без повторного разбора HTML
+    private Map<String, List<Integer>> getLemmaPositions(Page page) {
+        String text = page.getPageText() != null
+                ? page.getPageText()
+                : Jsoup.parse(page.getPageContent()).text();
+        return lemmaService.getLemmaPositions(text);
+    }
+
+    //Ранг леммы на странице - число её вхождений
+    private Map<String, Integer> countLemmas(Map<String, List<Integer>> positions) {
+        Map<String, Integer> lemmas = new LinkedHashMap<>();
+        positions.forEach((lemma, lemmaPositions) -> lemmas.put(lemma, lemmaPositions.size()));
+        return lemmas;
+    }
+
+    //Почти дубликаты уже проиндексированных страниц сохраняются без индекса, если так настроено
+    private boolean isSkippedDuplicate(Page page, Map<String, Integer> lemmas) {
+        return duplicateService.registerPage(page, lemmas).isPresent() && duplicateService.isSkipDuplicates();
     }
 
     private void refreshLemma(Page refreshPage) {
@@ -83,44 +113,46 @@ public class PageIndexerServiceImpl implements PageIndexerService {
     }
 
     @Transactional
-    private void saveLemma(String lemma, Integer rank, Page indexingPage) {
+    private Index saveLemma(String lemma, Integer rank, Page indexingPage) {
         Lemma existLemmaInDB = lemmaRepository.lemmaExist(lemma, indexingPage.getSite().getId());
         if (existLemmaInDB != null) {
             existLemmaInDB.setFrequency(existLemmaInDB.getFrequency() + rank);
             lemmaRepository.save(existLemmaInDB);
-            createIndex(indexingPage, existLemmaInDB, rank);
-        } else {
-            try {
-                Lemma newLemmaToDB = new Lemma();
-                newLemmaToDB.setSite(indexingPage.getSite());
-                newLemmaToDB.setLemma(lemma);
-                newLemmaToDB.setFrequency(rank);
-                lemmaRepository.saveAndFlush(newLemmaToDB);
-                createIndex(indexingPage, newLemmaToDB, rank);
-            } catch (DataIntegrityViolationException ex) {
-                log.debug("Не удалось сохранить лемму '{}'. Повторная попытка.", lemma, ex);
-                saveLemma(lemma, rank, indexingPage);
-            }
+            return createIndex(indexingPage, existLemmaInDB, rank);
+        }
+        try {
+            Lemma newLemmaToDB = new Lemma();
+            newLemmaToDB.setSite(indexingPage.getSite());
+            newLemmaToDB.setLemma(lemma);
+            newLemmaToDB.setFrequency(rank);
+            lemmaRepository.saveAndFlush(newLemmaToDB);
+            siteStatsService.lemmaAdded(indexingPage.getSite().getId());
+            return createIndex(indexingPage, newLemmaToDB, rank);
+        } catch (DataIntegrityViolationException ex) {
+            log.debug("Не удалось сохранить лемму '{}'. Повторная попытка.", lemma, ex);
+            return saveLemma(lemma, rank, indexingPage);
         }
-
     }
 
-    private void createIndex(Page indexingPage, Lemma lemmaInDB, Integer rank) {
-        Index indexSearchExist = indexSearchRepository.findIndexByPageIdAndLemmaId(indexingPage.getId(), lemmaInDB.getId());
-        if (indexSearchExist != null) {
-            indexSearchExist.setRank(indexSearchExist.getRank() + rank);
-            indexSearchRepository.save(indexSearchExist);
-        } else {
-            Index index = new Index();
-            index.setPage(indexingPage);
-            index.setLemma(lemmaInDB);
-            index.setRank(rank);
-            indexSearchRepository.save(index);
-        }
+    //Ключи карты лемм уникальны, а индексы страницы перед сохранением пусты (новая страница
+    //или индексы удалены в refreshIndex), поэтому проверка существования индекса не нужна
+    private Index createIndex(Page indexingPage, Lemma lemmaInDB, Integer rank) {
+        Index index = new Index();
+        index.setPage(indexingPage);
+        index.setLemma(lemmaInDB);
+        index.setRank(rank);
+        return index;
     }
 
-    private void saveLemmasForPage(Map<String, Integer> lemmas, Page page) {
-        lemmas.entrySet().parallelStream()
-                .forEach(entry -> saveLemma(entry.getKey(), entry.getValue(), page));
+    private void saveLemmasForPage(Map<String, List<Integer>> positions, Page page) {
+        List<Index> indexes = positions.entrySet().parallelStream()
+                .map(entry -> {
+                    Index index = saveLemma(entry.getKey(), entry.getValue().size(), page);
+                    index.setPositions(PositionCodec.encode(entry.getValue()));
+                    return index;
+                })
+                .toList();
+        //Индексы страницы сохраняются одним вызовом, что позволяет Hibernate отправить их батчем
+        indexSearchRepository.saveAll(indexes);
     }
 }
\ No newline at end of file
@@ -0,0 +1,80 @@
+package searchengine.service.impl;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import searchengine.config.SearchConfig;
+import searchengine.dto.response.NotOkResponse;
+import searchengine.service.SearchRequestService;
+import searchengine.service.SearchService;
+
+import java.util.concurrent.*;
+
+/**
+ * Поисковые запросы выполняются не в потоках Tomcat, а в пуле с ограниченной очередью. Запрос, не
+ * поместившийся в очередь, сразу получает 503. По истечении requestTimeoutMillis клиент получает 503,
+ * а поток поиска прерывается: поиск проверяет прерывание между страницами при построении сниппетов.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SearchRequestServiceImpl implements SearchRequestService {
+    private final SearchService searchService;
+    private final SearchConfig searchConfig;
+    private final MeterRegistry meterRegistry;
+
+    private ExecutorService requestExecutor;
+    private ScheduledExecutorService deadlineScheduler;
+
+    @PostConstruct
+    public void init() {
+        requestExecutor = new ThreadPoolExecutor(searchConfig.getRequestThreads(), searchConfig.getRequestThreads(),
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(searchConfig.getRequestQueueCapacity()),
+                new ThreadPoolExecutor.AbortPolicy());
+        deadlineScheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        requestExecutor.shutdownNow();
+        deadlineScheduler.shutdownNow();
+    }
+
+    @Override
+    public CompletableFuture<ResponseEntity<Object>> submit(String query, String site, int offset, int limit) {
+        CompletableFuture<ResponseEntity<Object>> result = new CompletableFuture<>();
+        Future<?> task;
+        try {
+            task = requestExecutor.submit(() -> {
+                try {
+                    result.complete(searchService.search(query, site, offset, limit));
+                } catch (Exception ex) {
+                    result.completeExceptionally(ex);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            meterRegistry.counter("search.rejected", "reason", "overload").increment();
+            log.warn("Поисковый запрос '{}' отклонён: очередь запросов заполнена", query);
+            return CompletableFuture.completedFuture(unavailable("Сервер перегружен, повторите запрос позже"));
+        }
+        ScheduledFuture<?> deadline = deadlineScheduler.schedule(() -> {
+            if (result.complete(unavailable("Поиск не уложился в отведённое время"))) {
+                task.cancel(true);
+                meterRegistry.counter("search.rejected", "reason", "deadline").increment();
+                log.warn("Поисковый запрос '{}' прерван через {} мс", query, searchConfig.getRequestTimeoutMillis());
+            }
+        }, searchConfig.getRequestTimeoutMillis(), TimeUnit.MILLISECONDS);
+        result.whenComplete((response, ex) -> deadline.cancel(false));
+        return result;
+    }
+
+    private ResponseEntity<Object> unavailable(String message) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(new NotOkResponse(message));
+    }
+}
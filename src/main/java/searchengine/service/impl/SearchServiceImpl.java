@@ -1,5 +1,8 @@
 package searchengine.service.impl;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.jsoup.Jsoup;
@@ -8,7 +11,9 @@ import org.jsoup.nodes.Element;
 import org.springframework.data.domain.Example;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.config.SearchConfig;
 import searchengine.dto.RankDto;
 import searchengine.dto.response.NotOkResponse;
 import searchengine.dto.response.SearchDataResponse;
@@ -16,14 +21,23 @@ import searchengine.dto.response.SearchResponse;
 import searchengine.model.*;
 import searchengine.repository.IndexRepository;
 import searchengine.repository.LemmaRepository;
+import searchengine.repository.PageContentRepository;
 import searchengine.repository.PageRepository;
 import searchengine.repository.SiteRepository;
 import searchengine.service.LemmaService;
 import searchengine.service.SearchService;
+import searchengine.service.SegmentIndexService;
+import searchengine.service.SuggestService;
+import searchengine.util.PositionCodec;
+import searchengine.util.Proximity;
+import searchengine.util.SnippetExtractor;
 
 import java.io.IOException;
 import java.util.*;
-import java.util.function.Function;
+import java.util.concurrent.*;
+import java.util.regex.Matcher;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 @Service
@@ -33,20 +47,59 @@ public class SearchServiceImpl implements SearchService {
 
     private static final double FREQUENCY_LIMIT_PROPORTION = 80.0;
     private static final int MAX_SNIPPET_LENGTH = 200;
-    private static final int LEFT_OFFSET = 30;   // отступ влево от первого найденного слова
-    private static final int RIGHT_OFFSET = 30;  // отступ вправо от последнего найденного слова
+    private static final Pattern PHRASE = Pattern.compile("\"([^\"]+)\"");
+    //Максимальная надбавка к релевантности, когда все слова запроса стоят подряд
+    private static final double PROXIMITY_WEIGHT = 0.5;
+    private static final int POSITIONS_BATCH_SIZE = 1000;
 
     private final SiteRepository siteRepository;
     private final PageRepository pageRepository;
+    private final PageContentRepository pageContentRepository;
     private final LemmaRepository lemmaRepository;
     private final IndexRepository indexRepository;
     private final LemmaService lemmaService;
+    private final SegmentIndexService segmentIndexService;
+    private final SuggestService suggestService;
+    private final SearchConfig searchConfig;
+    private final PlatformTransactionManager transactionManager;
+    private final MeterRegistry meterRegistry;
     private final Status indexSuccessStatus = Status.INDEXED;
 
-    private List<SearchDataResponse> lastSearchResult = new ArrayList<>();
-    private String lastQuery = "";
+    //Пул поиска по сайтам с ограниченной очередью: при переполнении задача сайта отклоняется,
+    //а сайт считается не успевшим, как при истечении timeoutMillis
+    private ExecutorService searchExecutor;
+    private TransactionTemplate readOnlyTransaction;
+
+    //Результаты последних запросов для постраничного вывода: ключ - запрос и сайт, значение - неизменяемый
+    //список, вытесняется давно не запрошенный. Доступ к LinkedHashMap в порядке обращений синхронизирован
+    private Map<CacheKey, List<SearchHit>> searchCache;
+
+    @PostConstruct
+    public void init() {
+        searchExecutor = new ThreadPoolExecutor(searchConfig.getThreads(), searchConfig.getThreads(),
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(searchConfig.getQueueCapacity()),
+                new ThreadPoolExecutor.AbortPolicy());
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        int cacheSize = searchConfig.getCacheSize();
+        searchCache = Collections.synchronizedMap(new LinkedHashMap<CacheKey, List<SearchHit>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey, List<SearchHit>> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        searchExecutor.shutdownNow();
+    }
 
-    @Transactional
+    /**
+     * Внешней транзакции нет: поиск по каждому сайту выполняется в своей транзакции только для чтения,
+     * поэтому поток запроса не держит соединение из пула, пока ждёт потоки поиска по сайтам.
+     */
     @Override
     public ResponseEntity<Object> search(String query, String site, int offset, int limit) throws IOException {
         if (query == null || query.isEmpty()) {
@@ -56,57 +109,168 @@ public class SearchServiceImpl implements SearchService {
             return ResponseEntity.badRequest().body(new NotOkResponse("Индексация сайта для поиска не закончена"));
         }
 
-        if (lastQuery.equals(query) && offset != 0) {
-            return createResponse(lastSearchResult, offset, limit);
+        //Первая порция всегда ищется заново, следующие берутся из кэша, если запрос ещё в нём
+        CacheKey cacheKey = new CacheKey(query, site == null ? "" : site.trim());
+        List<SearchHit> cached = offset != 0 ? searchCache.get(cacheKey) : null;
+        if (cached != null) {
+            meterRegistry.counter("search.cache", "result", "hit").increment();
+            return createResponse(cached, offset, limit);
         }
+        meterRegistry.counter("search.cache", "result", "miss").increment();
 
-        lastQuery = query;//Запоминаем текст последнего поискового запроса
-        Site searchSite = siteRepository.getSiteByUrl(site);
-        Map<String, Integer> lemmasMapOfQuery = lemmaService.getLemmasFromText(query);
+        Map<String, Integer> lemmasMapOfQuery = correctUnknownLemmas(lemmaService.getLemmasFromText(query));
         log.info("lemmas for search size: {}", lemmasMapOfQuery.size());
-        Map<String, Integer> lemmasMap = excludeFrequentlyLemmas(lemmasMapOfQuery, searchSite);
-        if (lemmasMap.isEmpty()) {
+        List<List<PhraseTerm>> phrases = parsePhrases(query);
+        List<Site> searchSites = site == null || site.isBlank()
+                ? siteRepository.findAll()
+                : List.of(siteRepository.getSiteByUrl(site));
+        //Результаты отсортированы по убыванию абсолютной релевантности
+        SearchHits searchHits = searchSites.size() == 1
+                ? new SearchHits(readOnlyTransaction.execute(
+                        status -> searchSite(searchSites.get(0), lemmasMapOfQuery, phrases)), true)
+                : searchAllSites(searchSites, lemmasMapOfQuery, phrases);
+        if (searchHits.hits().isEmpty()) {
             return getNoResultsResponse();
         }
+        List<SearchHit> searchResult = resolveRelRelevance(searchHits.hits());
+        //Неполный результат (часть сайтов не успела) не кэшируется для постраничного вывода
+        if (searchHits.complete()) {
+            searchCache.put(cacheKey, searchResult);
+        }
+
+        return createResponse(searchResult, offset, limit);
+    }
+
+    //Леммы, которых нет в словаре проиндексированных сайтов (обычно опечатки), заменяются ближайшими
+    private Map<String, Integer> correctUnknownLemmas(Map<String, Integer> lemmas) {
+        Map<String, Integer> result = new HashMap<>();
+        lemmas.forEach((lemma, count) -> {
+            String corrected = suggestService.isKnown(lemma) ? lemma : suggestService.correct(lemma).orElse(lemma);
+            if (!corrected.equals(lemma)) {
+                log.info("Лемма запроса '{}' заменена на '{}'", lemma, corrected);
+            }
+            result.merge(corrected, count, Integer::sum);
+        });
+        return result;
+    }
+
+    //Поиск по одному сайту: не больше maxResultsPerSite самых релевантных страниц сайта, без сниппетов
+    private List<SearchHit> searchSite(Site site, Map<String, Integer> lemmasMapOfQuery,
+                                                List<List<PhraseTerm>> phrases) {
+        Map<String, Integer> lemmasMap = timePhase("lemmas", () -> excludeFrequentlyLemmas(lemmasMapOfQuery, site));
+        if (lemmasMap.isEmpty()) {
+            return List.of();
+        }
 
         Map<String, Integer> sortedLemmasMap = sortByFrequencyAsc(lemmasMap);
         List<String> lemmasSortList = sortedLemmasMap.keySet().stream().toList();
-        List<Page> pages = findPageMatchingQuery(lemmasSortList, searchSite);
-        log.info("Количество страниц с леммами из поискового запроса {}", pages.size());
-        if (pages.isEmpty()) {
-            return getNoResultsResponse();
-        }
-        // Расчёт релевантности
-        List<RankDto> pagesRelevance = getPagesRelevance(pages, lemmasSortList, searchSite);
-        // Сортировка страниц по релевантности (от большей к меньшей)
-        sortByRelativeRelevanceDesc(pagesRelevance);
-        // Преобразование в SearchDataResponse
-        List<SearchDataResponse> searchDataResponseList = convertToSearchDataResponse(pagesRelevance, lemmasSortList);
-        //Сортировка по релевантности и по количеству найденных слов
-        lastSearchResult = searchDataResponseList.stream()
-                .sorted(Comparator.comparingDouble(SearchDataResponse::getRelevance).reversed())
+        // Поиск страниц и расчёт релевантности
+        List<RankDto> matchedPages = timePhase("intersection",
+                () -> collapseDuplicates(findPagesRelevance(lemmasSortList, site)));
+        checkNotCancelled();
+        List<RankDto> pagesRelevance = timePhase("ranking", () -> {
+            List<RankDto> ranked = applyPositions(matchedPages, lemmasSortList, phrases, site);
+            // Сортировка страниц по релевантности (от большей к меньшей)
+            sortByAbsRelevanceDesc(ranked);
+            return ranked;
+        });
+        log.info("Сайт {}: количество страниц с леммами из поискового запроса {}", site.getUrl(), pagesRelevance.size());
+        return pagesRelevance.stream()
+                .limit(searchConfig.getMaxResultsPerSite())
+                .map(rank -> new SearchHit(site, rank.getPageId(), rank.getPage().getPath(),
+                        rank.getAbsRelevance(), lemmasSortList))
                 .toList();
+    }
 
-        return createResponse(lastSearchResult, offset, limit);
+    //Время этапа поиска: lemmas - частоты лемм, intersection - поиск страниц со всеми леммами,
+    //ranking - позиции слов и сортировка, snippets - загрузка страниц выдаваемой порции и построение сниппетов
+    private <T> T timePhase(String phase, Supplier<T> action) {
+        return meterRegistry.timer("search.phase", "phase", phase).record(action);
+    }
+
+    /**
+     * Поиск по всем сайтам: каждый сайт ищется параллельно в своей транзакции, списки сайтов
+     * сливаются по релевантности. Сайты, не успевшие за timeoutMillis или не принятые в заполненную
+     * очередь пула, в ответ не попадают, а результат помечается неполным.
+     */
+    private SearchHits searchAllSites(List<Site> sites, Map<String, Integer> lemmasMapOfQuery,
+                                      List<List<PhraseTerm>> phrases) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(searchConfig.getTimeoutMillis());
+        Map<Site, Future<List<SearchHit>>> futures = new LinkedHashMap<>();
+        boolean partial = false;
+        for (Site site : sites) {
+            try {
+                futures.put(site, searchExecutor.submit(
+                        () -> readOnlyTransaction.execute(status -> searchSite(site, lemmasMapOfQuery, phrases))));
+            } catch (RejectedExecutionException ex) {
+                partial = true;
+                meterRegistry.counter("search.rejected", "reason", "site-queue").increment();
+                log.warn("Очередь поиска по сайтам заполнена, сайт {} пропущен", site.getUrl());
+            }
+        }
+        List<List<SearchHit>> siteResults = new ArrayList<>();
+        for (Map.Entry<Site, Future<List<SearchHit>>> entry : futures.entrySet()) {
+            try {
+                long remaining = Math.max(deadline - System.nanoTime(), 0);
+                siteResults.add(entry.getValue().get(remaining, TimeUnit.NANOSECONDS));
+            } catch (TimeoutException ex) {
+                entry.getValue().cancel(true);
+                partial = true;
+                log.warn("Поиск по сайту {} не уложился в {} мс", entry.getKey().getUrl(), searchConfig.getTimeoutMillis());
+            } catch (ExecutionException ex) {
+                partial = true;
+                log.error("Ошибка поиска по сайту {}", entry.getKey().getUrl(), ex.getCause());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                futures.values().forEach(future -> future.cancel(true));
+                throw new RuntimeException("Поиск прерван", ex);
+            }
+        }
+        return new SearchHits(mergeByRelevance(siteResults), !partial);
+    }
+
+    //k-путевое слияние списков сайтов, каждый из которых отсортирован по убыванию релевантности
+    private List<SearchHit> mergeByRelevance(List<List<SearchHit>> siteResults) {
+        PriorityQueue<int[]> heads = new PriorityQueue<>(Comparator.comparingDouble(
+                (int[] head) -> siteResults.get(head[0]).get(head[1]).relevance()).reversed());
+        int total = 0;
+        for (int i = 0; i < siteResults.size(); i++) {
+            total += siteResults.get(i).size();
+            if (!siteResults.get(i).isEmpty()) {
+                heads.add(new int[]{i, 0});
+            }
+        }
+        List<SearchHit> result = new ArrayList<>(total);
+        while (!heads.isEmpty()) {
+            int[] head = heads.poll();
+            List<SearchHit> list = siteResults.get(head[0]);
+            result.add(list.get(head[1]));
+            if (++head[1] < list.size()) {
+                heads.add(head);
+            }
+        }
+        return result;
     }
 
-    private ResponseEntity<Object> createResponse(List<SearchDataResponse> searchResult, int offset, int limit) {
+    //Сниппеты строятся только для выдаваемой порции результатов, после ранжирования и слияния сайтов
+    private ResponseEntity<Object> createResponse(List<SearchHit> searchResult, int offset, int limit) {
 
         int totalSize = searchResult.size(); //количеств строк в поисковом ответе
+        List<SearchHit> window;
         //Если количество строк в ответе меньше лимита для вывода, то выводим весь результат сразу
         if (totalSize <= limit) {
-            return ResponseEntity.ok().body(new SearchResponse(true, totalSize, searchResult));
-        }
-        //Если смещение выходит за размеры ответа, возвращаем пустой результат
-        if (offset > totalSize) {
+            window = searchResult;
+        } else if (offset > totalSize) {
+            //Если смещение выходит за размеры ответа, возвращаем пустой результат
             return getNoResultsResponse();
+        } else {
+            window = searchResult.subList(offset, Math.min(offset + limit, totalSize));
         }
 
-        int to = Math.min(offset + limit, totalSize);
+        List<SearchDataResponse> result = timePhase("snippets",
+                () -> readOnlyTransaction.execute(status -> convertToSearchDataResponse(window)));
 
-        List<SearchDataResponse> result = searchResult.subList(offset, to);
-
-        return ResponseEntity.ok().body(new SearchResponse(true, searchResult.size(), result));
+        return ResponseEntity.ok().body(new SearchResponse(true, totalSize, result));
     }
 
     private Boolean checkIndexStatusNotIndexed(String site) {
@@ -138,7 +302,7 @@ public class SearchServiceImpl implements SearchService {
         }
         //Исключаем высокочастотные леммы
         for (String lemma : uniqSimpleLemmas) {
-            int frequency = lemmaFrequencies.get(lemma);
+            int frequency = lemmaFrequencies.getOrDefault(lemma, 0);
             double frequencyProportion = (double) frequency / countPages * 100;
             log.info("Лемма: {} Частотная пропорция: {}", lemma, frequencyProportion);
             //Если лемма из поискового запроса есть в БД и её частотность не выше установленного лимита, добавляем в результат
@@ -161,6 +325,128 @@ public class SearchServiceImpl implements SearchService {
                 ));
     }
 
+    //Страницы ищутся по сегментам индекса, если они записаны для сайта, иначе - через БД
+    private List<RankDto> findPagesRelevance(List<String> lemmasList, Site site) {
+        Optional<Map<Integer, Integer>> segmentResult =
+                segmentIndexService.findPagesRelevance(lemmasList, List.of(site.getId()));
+        if (segmentResult.isPresent()) {
+            return getPagesRelevanceFromSegments(segmentResult.get());
+        }
+        List<Page> pages = findPageMatchingQuery(lemmasList, site);
+        if (pages.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return getPagesRelevance(pages, lemmasList, site);
+    }
+
+    //Фразы запроса в кавычках: леммы фразы со смещениями слов относительно начала фразы
+    private List<List<PhraseTerm>> parsePhrases(String query) {
+        List<List<PhraseTerm>> phrases = new ArrayList<>();
+        Matcher matcher = PHRASE.matcher(query);
+        while (matcher.find()) {
+            List<PhraseTerm> phrase = new ArrayList<>();
+            lemmaService.getLemmaPositions(matcher.group(1))
+                    .forEach((lemma, positions) -> positions.forEach(position -> phrase.add(new PhraseTerm(lemma, position))));
+            phrase.sort(Comparator.comparingInt(PhraseTerm::offset));
+            if (phrase.size() > 1) {
+                phrases.add(phrase);
+            }
+        }
+        return phrases;
+    }
+
+    /**
+     * Учёт позиций слов. Позиции загружаются и декодируются только для страниц, уже прошедших
+     * пересечение по леммам: страницы без фраз запроса отбрасываются, релевантность остальных
+     * увеличивается тем сильнее, чем ближе друг к другу стоят слова запроса.
+     * Страницы, проиндексированные без позиций, остаются без изменений.
+     */
+    private List<RankDto> applyPositions(List<RankDto> ranks, List<String> lemmas,
+                                         List<List<PhraseTerm>> phrases, Site site) {
+        if (ranks.isEmpty() || (phrases.isEmpty() && lemmas.size() < 2)) {
+            return ranks;
+        }
+        Map<Integer, Map<String, byte[]>> positionsByPage = loadPositions(ranks, lemmas, site);
+        List<RankDto> result = new ArrayList<>(ranks.size());
+        for (RankDto rank : ranks) {
+            Map<String, byte[]> encoded = positionsByPage.get(rank.getPageId());
+            if (encoded == null || encoded.size() < lemmas.size() || encoded.containsValue(null)) {
+                result.add(rank);
+                continue;
+            }
+            Map<String, int[]> positions = new HashMap<>();
+            encoded.forEach((lemma, bytes) -> positions.put(lemma, PositionCodec.decode(bytes)));
+            if (!matchesPhrases(positions, phrases)) {
+                continue;
+            }
+            rank.setAbsRelevance(rank.getAbsRelevance() * Proximity.getBoost(positions.values(), PROXIMITY_WEIGHT));
+            result.add(rank);
+        }
+        return result;
+    }
+
+    private Map<Integer, Map<String, byte[]>> loadPositions(List<RankDto> ranks, List<String> lemmas, Site site) {
+        Map<Integer, Map<String, byte[]>> positionsByPage = new HashMap<>();
+        List<Integer> pageIds = ranks.stream().map(RankDto::getPageId).toList();
+        for (int from = 0; from < pageIds.size(); from += POSITIONS_BATCH_SIZE) {
+            List<Integer> batch = pageIds.subList(from, Math.min(from + POSITIONS_BATCH_SIZE, pageIds.size()));
+            for (Object[] row : indexRepository.findPositions(batch, lemmas, site.getId())) {
+                positionsByPage.computeIfAbsent((Integer) row[0], id -> new HashMap<>())
+                        .put((String) row[1], (byte[]) row[2]);
+            }
+        }
+        return positionsByPage;
+    }
+
+    //Слова фразы должны стоять на странице с теми же смещениями, что и в запросе;
+    //леммы, исключённые из запроса как частые, не проверяются
+    private boolean matchesPhrases(Map<String, int[]> positions, List<List<PhraseTerm>> phrases) {
+        for (List<PhraseTerm> phrase : phrases) {
+            List<PhraseTerm> terms = phrase.stream()
+                    .filter(term -> positions.containsKey(term.lemma()))
+                    .toList();
+            if (terms.size() < 2) {
+                continue;
+            }
+            PhraseTerm anchor = terms.get(0);
+            boolean found = false;
+            for (int position : positions.get(anchor.lemma())) {
+                int start = position - anchor.offset();
+                found = terms.stream()
+                        .allMatch(term -> Arrays.binarySearch(positions.get(term.lemma()), start + term.offset()) >= 0);
+                if (found) {
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //Почти дубликат не выводится, если в результатах есть его оригинал
+    private List<RankDto> collapseDuplicates(List<RankDto> ranks) {
+        Set<Integer> pageIds = ranks.stream().map(RankDto::getPageId).collect(Collectors.toSet());
+        return ranks.stream()
+                .filter(rank -> rank.getPage().getDuplicateOf() == null
+                        || !pageIds.contains(rank.getPage().getDuplicateOf()))
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    private List<RankDto> getPagesRelevanceFromSegments(Map<Integer, Integer> absRelevanceByPage) {
+        List<RankDto> result = new ArrayList<>();
+        for (Page page : pageRepository.findAllById(absRelevanceByPage.keySet())) {
+            RankDto rankDto = new RankDto();
+            rankDto.setPage(page);
+            rankDto.setPageId(page.getId());
+            rankDto.setAbsRelevance(absRelevanceByPage.get(page.getId()));
+            result.add(rankDto);
+        }
+
+        return result;
+    }
+
     private List<Page> findPageMatchingQuery(List<String> lemmasStrings, Site site) {
         List<Page> pages = getListPagesFoundLemmas(lemmasStrings.get(0), site);
         log.info("findPageMatchingQuery pages count: {}", pages.size());
@@ -176,7 +462,6 @@ public class SearchServiceImpl implements SearchService {
     private List<RankDto> getPagesRelevance(List<Page> pages, List<String> lemmasList, Site site) {
         List<RankDto> result = new ArrayList<>();
         List<Lemma> lemmas = findAllLemmasByName(lemmasList, site);
-        int maxAbsRelevance = 0;
 
         for (Page page : pages) {
             RankDto rankDto = new RankDto();
@@ -197,161 +482,77 @@ public class SearchServiceImpl implements SearchService {
             result.add(rankDto);
         }
 
-        return resolveRelRelevance(result, maxAbsRelevance);
+        return result;
     }
 
-    private void sortByRelativeRelevanceDesc(List<RankDto> ranks) {
-        ranks.sort(Comparator.comparingDouble(RankDto::getRelativeRelevance).reversed());
+    private void sortByAbsRelevanceDesc(List<RankDto> ranks) {
+        ranks.sort(Comparator.comparingDouble(RankDto::getAbsRelevance).reversed());
     }
 
-    private List<SearchDataResponse> convertToSearchDataResponse(List<RankDto> ranks, List<String> lemmas) {
-        List<SearchDataResponse> result = new ArrayList<>();
+    /**
+     * Строки ответа для порции результатов. Содержимое страниц загружается одним запросом и разбирается
+     * только здесь, поэтому число разбираемых страниц не больше limit, а не maxResultsPerSite на сайт.
+     * Страница без совпадений в тексте (например, слово было только в атрибутах) остаётся в выдаче
+     * с пустым сниппетом, чтобы число результатов не менялось от порции к порции.
+     */
+    private List<SearchDataResponse> convertToSearchDataResponse(List<SearchHit> hits) {
+        Map<Integer, PageContent> contents = new HashMap<>();
+        pageContentRepository.findAllById(hits.stream().map(SearchHit::pageId).toList())
+                .forEach(content -> contents.put(content.getPageId(), content));
+        //Леммы запроса общие для всех страниц сайта, поэтому извлекатель создаётся один раз на сайт
+        Map<List<String>, SnippetExtractor> snippetExtractors = new HashMap<>();
 
-        for (RankDto rank : ranks) {
-            Document doc = Jsoup.parse(rank.getPage().getPageContent());
+        List<SearchDataResponse> result = new ArrayList<>();
+        for (SearchHit hit : hits) {
+            checkNotCancelled();
+            PageContent content = contents.get(hit.pageId());
+            if (content == null) {
+                continue;
+            }
+            Document doc = Jsoup.parse(content.getHtml());
             List<String> sentences = doc.body()
-                    .getElementsMatchingOwnText("[\\p{IsCyrillic}]")
+                    .getElementsMatchingOwnText("[\\p{IsCyrillic}\\p{IsLatin}]")
                     .stream()
                     .map(Element::text)
                     .toList();
 
-            for (String sentence : sentences) {
-                SnippetResult snippetResult = extractSnippetWithHighlightingAndContext(sentence, lemmas);
-                if (snippetResult.hasMatches()) {
-                    String truncatedSnippet = truncateSnippet(snippetResult.getSnippet(), MAX_SNIPPET_LENGTH);
-                    Page page = rank.getPage();
-                    Site site = page.getSite();
-                    String url = site.getUrl();;
-                    String uri = page.getPath().substring(1);
-                    result.add(new SearchDataResponse(
-                            url,
-                            site.getName(),
-                            uri,
-                            doc.title(),
-                            truncatedSnippet,
-                            rank.getRelativeRelevance(),
-                            snippetResult.getMatchCount()
-                    ));
-                }
-            }
+            //Одна строка ответа на страницу - с лучшим фрагментом среди всех её предложений
+            SnippetExtractor snippetExtractor = snippetExtractors.computeIfAbsent(hit.lemmas(),
+                    lemmas -> new SnippetExtractor(lemmas, lemmaService::getLemmaByWord, MAX_SNIPPET_LENGTH));
+            SnippetExtractor.SnippetResult snippetResult = snippetExtractor.extractBest(sentences);
+            result.add(new SearchDataResponse(
+                    hit.site().getUrl(),
+                    hit.site().getName(),
+                    hit.path().substring(1),
+                    doc.title(),
+                    snippetResult.getSnippet(),
+                    hit.relevance(),
+                    snippetResult.getMatchCount()
+            ));
         }
         return result;
     }
 
-
-    //Формирует сниппет с выделением ключевых слов и контекстом вокруг них.
-    private SnippetResult extractSnippetWithHighlightingAndContext(String sentence, List<String> lemmas) {
-        List<HighlightedWord> highlightedWords = new ArrayList<>();
-        int matchCount = 0;
-
-        String[] words = sentence.split("[\\s\\p{Punct}]+");
-        int[] wordPositions = calculateWordPositions(sentence, words);
-
-        for (int i = 0; i < words.length; i++) {
-            String word = words[i];
-            if (word.isEmpty()) continue;
-
-            String cleanedWord = word.replaceAll("\\p{Punct}", "");
-            String lemmaFromWord = lemmaService.getLemmaByWord(cleanedWord);
-
-
-            if (lemmas.contains(lemmaFromWord)) {
-                highlightedWords.add(new HighlightedWord(word, wordPositions[i], word.length()));
-                matchCount++;
-            }
-        }
-
-        if (highlightedWords.isEmpty()) {
-            return new SnippetResult("", 0);
-        }
-
-        int firstWordStart = highlightedWords.get(0).startPos;
-        int lastWordEnd = highlightedWords.get(highlightedWords.size() - 1).endPos;
-
-        int contextStart = Math.max(0, firstWordStart - LEFT_OFFSET);
-        int contextEnd = Math.min(sentence.length(), lastWordEnd + RIGHT_OFFSET);
-
-        StringBuilder snippet = new StringBuilder();
-        for (int i = 0; i < words.length; i++) {
-            int wordStart = wordPositions[i];
-            int wordEnd = wordStart + words[i].length();
-
-
-            if (wordEnd < contextStart || wordStart > contextEnd) {
-                continue; // слово вне контекста
-            }
-
-            if (isWordHighlighted(words[i], highlightedWords)) {
-                snippet.append("<b>").append(words[i]).append("</b> ");
-            } else {
-                snippet.append(words[i]).append(" ");
-            }
-        }
-
-        return new SnippetResult(snippet.toString().trim(), matchCount);
-    }
-
-
-    //Рассчитывает стартовые позиции каждого слова в исходной строке.
-    private int[] calculateWordPositions(String sentence, String[] words) {
-        int[] positions = new int[words.length];
-        int pos = 0;
-        for (int i = 0; i < words.length; i++) {
-            // Находим позицию слова, пропуская разделители
-            while (pos < sentence.length() && !sentence.substring(pos).startsWith(words[i])) {
-                pos++;
-            }
-            positions[i] = pos;
-            pos += words[i].length();
+    //Поток поиска прерывается, когда истёк срок запроса или сайт не уложился в timeoutMillis;
+    //поиск, прерванный до слияния результатов сайтов, в кэш не попадает
+    private void checkNotCancelled() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Поиск прерван");
         }
-        return positions;
     }
 
-
-     //Проверяет, нужно ли выделять слово.
-    private boolean isWordHighlighted(String word, List<HighlightedWord> highlightedWords) {
-        return highlightedWords.stream().anyMatch(hw -> hw.word.equals(word));
+    private record PhraseTerm(String lemma, int offset) {
     }
 
-
-    //Обрезает сниппет до максимальной длины, сохраняя целостность слов.
-    private String truncateSnippet(String snippet, int maxLength) {
-        if (snippet.length() <= maxLength) {
-            return snippet;
-        }
-        int lastSpace = snippet.lastIndexOf(' ', maxLength);
-        if (lastSpace == -1) {
-            return snippet.substring(0, maxLength) + "...";
-        } else {
-            return snippet.substring(0, lastSpace).trim() + "...";
-        }
+    //Найденная страница до построения сниппета; lemmas - леммы запроса, оставшиеся после отсева частых на её сайте
+    private record SearchHit(Site site, int pageId, String path, double relevance, List<String> lemmas) {
     }
 
-    // Вспомогательные классы
-    private static class HighlightedWord {
-        String word;
-        int startPos;
-        int endPos;
-
-        public HighlightedWord(String word, int startPos, int length) {
-            this.word = word;
-            this.startPos = startPos;
-            this.endPos = startPos + length;
-        }
+    //complete = false, если часть сайтов не успела или не была принята в очередь поиска
+    private record SearchHits(List<SearchHit> hits, boolean complete) {
     }
 
-    private static class SnippetResult {
-        private final String snippet;
-        private final int matchCount;
-
-        public SnippetResult(String snippet, int matchCount) {
-            this.snippet = snippet;
-            this.matchCount = matchCount;
-        }
-
-        public String getSnippet() { return snippet; }
-        public int getMatchCount() { return matchCount; }
-        public boolean hasMatches() { return matchCount > 0; }
+    private record CacheKey(String query, String site) {
     }
 
     private ResponseEntity<Object> getNoResultsResponse() {
@@ -379,17 +580,13 @@ public class SearchServiceImpl implements SearchService {
         return lemmaRepository.findAll(Example.of(exLemma));
     }
 
-    private List<RankDto> resolveRelRelevance(List<RankDto> ranks, int maxAbsRelevance) {
-
-        Function<RankDto, RankDto> setMaxAndRelRelevance = (rank) -> {
-            rank.setMaxLemmaRank(maxAbsRelevance);
-            rank.setRelativeRelevance(rank.getAbsRelevance() / rank.getMaxLemmaRank());
-            return rank;
-        };
-
-        return ranks.stream()
-                .map(setMaxAndRelRelevance)
-                .collect(Collectors.toList());
+    //Относительная релевантность: абсолютная, делённая на максимальную среди всех результатов
+    private List<SearchHit> resolveRelRelevance(List<SearchHit> results) {
+        double maxAbsRelevance = results.get(0).relevance();
+        return results.stream()
+                .map(hit -> new SearchHit(hit.site(), hit.pageId(), hit.path(),
+                        maxAbsRelevance > 0 ? hit.relevance() / maxAbsRelevance : 0.0, hit.lemmas()))
+                .toList();
     }
 
     private List<Lemma> findAllLemmasByName(List<String> lemmasList, Site site) {
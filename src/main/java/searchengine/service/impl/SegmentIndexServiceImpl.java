@@ -0,0 +1,271 @@
+package searchengine.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import searchengine.config.SegmentConfig;
+import searchengine.model.Page;
+import searchengine.model.Site;
+import searchengine.repository.IndexRepository;
+import searchengine.segment.Segment;
+import searchengine.segment.SegmentMerger;
+import searchengine.segment.SegmentWriter;
+import searchengine.service.SegmentIndexService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Индекс сайта в виде неизменяемых сегментов на диске (segment-settings.path/site-{id}/{поколение}.seg).
+ * Базовый сегмент пишется после индексации сайта, переиндексация страницы добавляет
+ * маленький сегмент поверх, при превышении maxSegments сегменты сливаются в один.
+ * Если для сайта сегментов нет или запись не удалась, поиск идёт через БД.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SegmentIndexServiceImpl implements SegmentIndexService {
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final SegmentConfig segmentConfig;
+    private final IndexRepository indexRepository;
+    //Сегменты сайта от нового к старому; списки неизменяемы и заменяются целиком
+    private final Map<Integer, List<Segment>> siteSegments = new ConcurrentHashMap<>();
+    private final Map<Integer, Object> siteLocks = new ConcurrentHashMap<>();
+
+    @Override
+    @Transactional(readOnly = true)
+    public void writeSiteSegment(Site site) {
+        if (!segmentConfig.isEnabled()) {
+            return;
+        }
+        int siteId = site.getId();
+        synchronized (lock(siteId)) {
+            try {
+                deleteSegments(siteId);
+                Files.createDirectories(siteDirectory(siteId));
+                long generation = 1;
+                Path file = segmentFile(siteId, generation);
+                try (SegmentWriter writer = new SegmentWriter(file);
+                     Stream<Object[]> rows = indexRepository.streamPostingsBySiteId(siteId)) {
+                    writeRows(writer, rows.iterator());
+                    writer.finish();
+                }
+                Segment segment = Segment.open(file, generation);
+                siteSegments.put(siteId, List.of(segment));
+                log.info("Записан сегмент индекса сайта {}: терминов {}", site.getUrl(), segment.getTermCount());
+            } catch (IOException | RuntimeException ex) {
+                log.error("Не удалось записать сегмент индекса сайта {}", site.getUrl(), ex);
+                deleteSegments(siteId);
+            }
+        }
+    }
+
+    @Override
+    public void updatePage(Page page) {
+        writePageSegment(page, true);
+    }
+
+    @Override
+    public void removePage(Page page) {
+        writePageSegment(page, false);
+    }
+
+    //Сегмент страницы перекрывает её записи в старых сегментах; без postings страница в поиске не находится
+    private void writePageSegment(Page page, boolean withPostings) {
+        if (!segmentConfig.isEnabled()) {
+            return;
+        }
+        int siteId = page.getSite().getId();
+        synchronized (lock(siteId)) {
+            List<Segment> current = getSegments(siteId);
+            if (current.isEmpty()) {
+                return;
+            }
+            try {
+                long generation = current.get(0).getGeneration() + 1;
+                Path file = segmentFile(siteId, generation);
+                try (SegmentWriter writer = new SegmentWriter(file)) {
+                    writer.cover(page.getId());
+                    if (withPostings) {
+                        writeRows(writer, indexRepository.findPostingsByPageId(page.getId()).iterator());
+                    }
+                    writer.finish();
+                }
+                List<Segment> updated = new ArrayList<>();
+                updated.add(Segment.open(file, generation));
+                updated.addAll(current);
+                if (updated.size() > segmentConfig.getMaxSegments()) {
+                    updated = mergeSegments(siteId, updated);
+                }
+                siteSegments.put(siteId, List.copyOf(updated));
+            } catch (IOException | RuntimeException ex) {
+                //Без этой страницы сегменты устарели, поэтому сайт переходит на поиск через БД
+                log.error("Не удалось обновить сегмент индекса для страницы {}", page.getPath(), ex);
+                deleteSegments(siteId);
+            }
+        }
+    }
+
+    @Override
+    public Optional<Map<Integer, Integer>> findPagesRelevance(List<String> lemmas, Collection<Integer> siteIds) {
+        if (!segmentConfig.isEnabled()) {
+            return Optional.empty();
+        }
+        Map<Integer, Integer> result = new HashMap<>();
+        for (Integer siteId : siteIds) {
+            List<Segment> segments = getSegments(siteId);
+            if (segments.isEmpty()) {
+                return Optional.empty();
+            }
+            result.putAll(findSitePagesRelevance(lemmas, segments));
+        }
+        return Optional.of(result);
+    }
+
+    @Override
+    public void clear() {
+        for (Integer siteId : new ArrayList<>(siteSegments.keySet())) {
+            synchronized (lock(siteId)) {
+                deleteSegments(siteId);
+            }
+        }
+        try (Stream<Path> dirs = Files.list(rootDirectory())) {
+            dirs.forEach(this::deleteDirectory);
+        } catch (IOException ex) {
+            log.debug("Каталог сегментов не найден: {}", ex.getMessage());
+        }
+    }
+
+    //Страницы, содержащие все леммы запроса, и сумма рангов этих лемм на каждой странице
+    private Map<Integer, Integer> findSitePagesRelevance(List<String> lemmas, List<Segment> segments) {
+        Map<Integer, Integer> relevance = null;
+        for (String lemma : lemmas) {
+            Map<Integer, Integer> lemmaPages = new HashMap<>();
+            for (int i = 0; i < segments.size(); i++) {
+                Segment.Postings postings = segments.get(i).postings(lemma);
+                for (int j = 0; j < postings.size(); j++) {
+                    int pageId = postings.pageId(j);
+                    if ((relevance == null || relevance.containsKey(pageId))
+                            && !Segment.isCoveredByNewer(segments, i, pageId)) {
+                        lemmaPages.merge(pageId, postings.rank(j), Integer::sum);
+                    }
+                }
+            }
+            if (relevance == null) {
+                relevance = lemmaPages;
+            } else {
+                relevance.keySet().retainAll(lemmaPages.keySet());
+                relevance.replaceAll((pageId, rank) -> rank + lemmaPages.get(pageId));
+            }
+            if (relevance.isEmpty()) {
+                break;
+            }
+        }
+        return relevance == null ? Collections.emptyMap() : relevance;
+    }
+
+    //Строки отсортированы по лемме, поэтому вхождения одного термина идут подряд
+    private void writeRows(SegmentWriter writer, Iterator<Object[]> rows) throws IOException {
+        String currentLemma = null;
+        while (rows.hasNext()) {
+            Object[] row = rows.next();
+            String lemma = (String) row[0];
+            if (!lemma.equals(currentLemma)) {
+                if (currentLemma != null) {
+                    writer.endTerm();
+                }
+                writer.startTerm(lemma);
+                currentLemma = lemma;
+            }
+            writer.addPosting((Integer) row[1], (Integer) row[2]);
+        }
+        if (currentLemma != null) {
+            writer.endTerm();
+        }
+    }
+
+    private List<Segment> mergeSegments(int siteId, List<Segment> segments) throws IOException {
+        long generation = segments.get(0).getGeneration() + 1;
+        Path file = segmentFile(siteId, generation);
+        SegmentMerger.merge(segments, file);
+        Segment merged = Segment.open(file, generation);
+        segments.forEach(segment -> deleteFile(segment.getPath()));
+        log.info("Сегменты сайта id: {} слиты в один, терминов {}", siteId, merged.getTermCount());
+        return List.of(merged);
+    }
+
+    private List<Segment> getSegments(int siteId) {
+        return siteSegments.computeIfAbsent(siteId, this::loadSegments);
+    }
+
+    //Открывает сегменты, оставшиеся на диске после перезапуска приложения
+    private List<Segment> loadSegments(int siteId) {
+        Path directory = siteDirectory(siteId);
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Segment> segments = new ArrayList<>();
+            for (Path file : files.filter(f -> f.getFileName().toString().endsWith(SEGMENT_SUFFIX)).toList()) {
+                String name = file.getFileName().toString();
+                long generation = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+                segments.add(Segment.open(file, generation));
+            }
+            segments.sort(Comparator.comparingLong(Segment::getGeneration).reversed());
+            return List.copyOf(segments);
+        } catch (IOException | RuntimeException ex) {
+            log.error("Не удалось открыть сегменты сайта id: {}", siteId, ex);
+            return List.of();
+        }
+    }
+
+    private void deleteSegments(int siteId) {
+        siteSegments.put(siteId, List.of());
+        deleteDirectory(siteDirectory(siteId));
+    }
+
+    //Отображённые в память файлы могут использоваться текущими запросами: на Linux удаление
+    //безопасно, страницы файла освобождаются после сборки мусора буферов
+    private void deleteDirectory(Path directory) {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(this::deleteFile);
+        } catch (IOException ex) {
+            log.warn("Не удалось очистить каталог сегментов {}: {}", directory, ex.getMessage());
+        }
+        deleteFile(directory);
+    }
+
+    private void deleteFile(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ex) {
+            log.warn("Не удалось удалить файл сегмента {}: {}", file, ex.getMessage());
+        }
+    }
+
+    private Object lock(int siteId) {
+        return siteLocks.computeIfAbsent(siteId, id -> new Object());
+    }
+
+    private Path rootDirectory() {
+        return Paths.get(segmentConfig.getPath());
+    }
+
+    private Path siteDirectory(int siteId) {
+        return rootDirectory().resolve("site-" + siteId);
+    }
+
+    private Path segmentFile(int siteId, long generation) {
+        return siteDirectory(siteId).resolve(generation + SEGMENT_SUFFIX);
+    }
+}
@@ -0,0 +1,114 @@
+package searchengine.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import searchengine.dto.statistic.SiteCounters;
+import searchengine.model.SiteStats;
+import searchengine.repository.LemmaRepository;
+import searchengine.repository.PageRepository;
+import searchengine.repository.SiteStatsRepository;
+import searchengine.service.SiteStatsService;
+
+import java.sql.Timestamp;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Счётчики страниц и лемм сайтов в памяти. Обход и индексация увеличивают их при сохранении новых
+ * строк page и lemma, поэтому статистика отдаётся без COUNT по таблицам. Счётчики сайта
+ * загружаются из site_stats при первом обращении, а записываются туда на контрольных точках обхода.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SiteStatsServiceImpl implements SiteStatsService {
+    //Скорость считается по приросту счётчиков за окно не короче RATE_WINDOW_MILLIS
+    private static final long RATE_WINDOW_MILLIS = 5_000;
+
+    private final SiteStatsRepository siteStatsRepository;
+    private final PageRepository pageRepository;
+    private final LemmaRepository lemmaRepository;
+    private final Map<Integer, Counters> counters = new ConcurrentHashMap<>();
+
+    @Override
+    public void pageAdded(int siteId) {
+        getSiteCounters(siteId).pages.incrementAndGet();
+    }
+
+    @Override
+    public void lemmaAdded(int siteId) {
+        getSiteCounters(siteId).lemmas.incrementAndGet();
+    }
+
+    @Override
+    public SiteCounters getCounters(int siteId) {
+        return getSiteCounters(siteId).snapshot(System.currentTimeMillis());
+    }
+
+    @Override
+    public void save(int siteId) {
+        Counters siteCounters = counters.get(siteId);
+        if (siteCounters == null) {
+            return;
+        }
+        try {
+            siteStatsRepository.save(new SiteStats(siteId, siteCounters.pages.get(), siteCounters.lemmas.get(),
+                    new Timestamp(System.currentTimeMillis())));
+        } catch (DataAccessException ex) {
+            log.warn("Не удалось сохранить статистику сайта id={}: {}", siteId, ex.getMessage());
+        }
+    }
+
+    @Override
+    public void clear() {
+        counters.clear();
+    }
+
+    private Counters getSiteCounters(int siteId) {
+        return counters.computeIfAbsent(siteId, this::load);
+    }
+
+    //Сайт без строки в site_stats (например, только что созданный) считается по таблицам один раз
+    private Counters load(int siteId) {
+        return siteStatsRepository.findById(siteId)
+                .map(stats -> new Counters(stats.getPages(), stats.getLemmas()))
+                .orElseGet(() -> new Counters(pageRepository.findCountRecordBySiteId(siteId),
+                        lemmaRepository.findCountRecordBySiteId(siteId)));
+    }
+
+    private static class Counters {
+        private final AtomicInteger pages;
+        private final AtomicInteger lemmas;
+        //Значения счётчиков в начале текущего окна и скорость за предыдущее окно
+        private long windowStart;
+        private int windowPages;
+        private int windowLemmas;
+        private double pagesPerSecond;
+        private double lemmasPerSecond;
+
+        private Counters(int pages, int lemmas) {
+            this.pages = new AtomicInteger(pages);
+            this.lemmas = new AtomicInteger(lemmas);
+            this.windowStart = System.currentTimeMillis();
+            this.windowPages = pages;
+            this.windowLemmas = lemmas;
+        }
+
+        private synchronized SiteCounters snapshot(long now) {
+            int currentPages = pages.get();
+            int currentLemmas = lemmas.get();
+            long elapsed = now - windowStart;
+            if (elapsed >= RATE_WINDOW_MILLIS) {
+                pagesPerSecond = (currentPages - windowPages) * 1000.0 / elapsed;
+                lemmasPerSecond = (currentLemmas - windowLemmas) * 1000.0 / elapsed;
+                windowStart = now;
+                windowPages = currentPages;
+                windowLemmas = currentLemmas;
+            }
+            return new SiteCounters(currentPages, currentLemmas, pagesPerSecond, lemmasPerSecond);
+        }
+    }
+}
@@ -5,13 +5,13 @@ import org.springframework.stereotype.Service;
 import searchengine.config.SiteConfig;
 import searchengine.config.ListSiteConfig;
 import searchengine.dto.statistic.DetailedStatisticsItem;
+import searchengine.dto.statistic.SiteCounters;
 import searchengine.dto.statistic.StatisticsData;
 import searchengine.dto.statistic.StatisticsResponse;
 import searchengine.dto.statistic.TotalStatistics;
 import searchengine.model.Site;
-import searchengine.repository.LemmaRepository;
-import searchengine.repository.PageRepository;
 import searchengine.repository.SiteRepository;
+import searchengine.service.SiteStatsService;
 import searchengine.service.StatisticsService;
 
 import java.time.Instant;
@@ -23,17 +23,16 @@ import java.util.List;
 public class StatisticsServiceImpl implements StatisticsService {
     private final ListSiteConfig sitesConfig;
     private final SiteRepository siteRepository;
-    private final PageRepository pageRepository;
-    private final LemmaRepository lemmaRepository;
+    private final SiteStatsService siteStatsService;
 
     @Override
-    public StatisticsResponse getStatistics() {
+    public StatisticsResponse getStatistics(boolean indexing) {
         List<Site> sites = siteRepository.findAll();
 
-        return sites.isEmpty() ? initialStatistics() : indexedStatistics(sites);
+        return sites.isEmpty() ? initialStatistics() : indexedStatistics(sites, indexing);
     }
 
-    private StatisticsResponse indexedStatistics(List<Site> sites) {
+    private StatisticsResponse indexedStatistics(List<Site> sites, boolean indexing) {
         StatisticsResponse response = new StatisticsResponse();
         TotalStatistics total = new TotalStatistics();
         StatisticsData data = new StatisticsData();
@@ -43,10 +42,12 @@ public class StatisticsServiceImpl implements StatisticsService {
             var item = createDetailedItemFromSite(site);
             total.setPages(total.getPages() + item.getPages());
             total.setLemmas(total.getLemmas() + item.getLemmas());
+            total.setPagesPerSecond(total.getPagesPerSecond() + item.getPagesPerSecond());
+            total.setLemmasPerSecond(total.getLemmasPerSecond() + item.getLemmasPerSecond());
             detailed.add(item);
         }
 
-        total.setIndexing(true);
+        total.setIndexing(indexing);
         total.setSites(sites.size());
         data.setDetailed(detailed);
         data.setTotal(total);
@@ -56,19 +57,20 @@ public class StatisticsServiceImpl implements StatisticsService {
         return response;
     }
 
+    //Число страниц и лемм берётся из счётчиков, которые ведут обход и индексация, а не COUNT по таблицам
     private DetailedStatisticsItem createDetailedItemFromSite(Site site) {
         DetailedStatisticsItem item = new DetailedStatisticsItem();
-        int siteId = site.getId();
-        int pageCount = pageRepository.findCountRecordBySiteId(siteId);
-        int lemmaCount = lemmaRepository.findCountRecordBySiteId(siteId);
+        SiteCounters counters = siteStatsService.getCounters(site.getId());
 
         item.setUrl(site.getUrl());
         item.setName(site.getName());
         item.setStatus(String.valueOf(site.getStatus()));
         item.setStatusTime(site.getStatusTime().getTime());
         item.setError(site.getLastError());
-        item.setPages(pageCount);
-        item.setLemmas(lemmaCount);
+        item.setPages(counters.getPages());
+        item.setLemmas(counters.getLemmas());
+        item.setPagesPerSecond(counters.getPagesPerSecond());
+        item.setLemmasPerSecond(counters.getLemmasPerSecond());
 
         return item;
     }
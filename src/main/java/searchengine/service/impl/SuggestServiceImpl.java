@@ -0,0 +1,92 @@
+package searchengine.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import searchengine.repository.LemmaRepository;
+import searchengine.service.SuggestService;
+import searchengine.util.LemmaTrie;
+
+import java.util.*;
+
+/**
+ * Подсказки и исправление опечаток по словарю лемм из таблицы lemma. Словарь хранится в памяти
+ * в виде {@link LemmaTrie}, строится при первом обращении и сбрасывается после индексации.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SuggestServiceImpl implements SuggestService {
+    private static final int MAX_LIMIT = 50;
+    //Короткие леммы исправляются не больше чем на одну правку, длинные - на две
+    private static final int SHORT_LEMMA_LENGTH = 4;
+    private static final int MIN_CORRECTED_LENGTH = 3;
+
+    private final LemmaRepository lemmaRepository;
+    private volatile LemmaTrie trie;
+
+    @Override
+    public List<String> suggest(String query, int limit) {
+        String normalized = query.toLowerCase(Locale.ROOT).trim();
+        if (normalized.isEmpty()) {
+            return List.of();
+        }
+        int lastSpace = normalized.lastIndexOf(' ');
+        String head = lastSpace < 0 ? "" : normalized.substring(0, lastSpace + 1);
+        String prefix = normalized.substring(lastSpace + 1);
+        int count = Math.min(Math.max(limit, 1), MAX_LIMIT);
+
+        LemmaTrie dictionary = getTrie();
+        List<String> completions = dictionary.complete(prefix, count);
+        if (completions.isEmpty() && prefix.length() >= MIN_CORRECTED_LENGTH) {
+            completions = dictionary.fuzzy(prefix, getMaxDistance(prefix), count);
+        }
+        return completions.stream()
+                .map(completion -> head + completion)
+                .toList();
+    }
+
+    @Override
+    public boolean isKnown(String lemma) {
+        return getTrie().contains(lemma);
+    }
+
+    @Override
+    public Optional<String> correct(String lemma) {
+        if (lemma.length() < MIN_CORRECTED_LENGTH) {
+            return Optional.empty();
+        }
+        return getTrie().fuzzy(lemma, getMaxDistance(lemma), 1).stream().findFirst();
+    }
+
+    @Override
+    public void invalidate() {
+        trie = null;
+    }
+
+    private int getMaxDistance(String word) {
+        return word.length() <= SHORT_LEMMA_LENGTH ? 1 : 2;
+    }
+
+    private LemmaTrie getTrie() {
+        LemmaTrie current = trie;
+        if (current != null) {
+            return current;
+        }
+        //Возвращается локальная ссылка: invalidate() может обнулить поле сразу после его чтения
+        synchronized (this) {
+            current = trie;
+            if (current == null) {
+                long start = System.currentTimeMillis();
+                LemmaTrie built = new LemmaTrie();
+                for (Object[] row : lemmaRepository.findAllLemmaFrequencies()) {
+                    built.add((String) row[0], (int) Math.min((Long) row[1], Integer.MAX_VALUE));
+                }
+                log.info("Словарь подсказок построен за {} мс, лемм: {}", System.currentTimeMillis() - start, built.size());
+                trie = built;
+                current = built;
+            }
+            return current;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package searchengine.util;
+
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.StreamParser;
+import searchengine.dto.index.ExtractedPage;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Потоковое извлечение заголовка, видимого текста и ссылок из HTML без построения полного DOM.
+ * Элементы разбираются {@link StreamParser} по мере закрытия тегов прямо из байтов ответа: текст
+ * блочного элемента забирается при его закрытии, после чего элемент удаляется из дерева, поэтому
+ * в памяти остаётся только незакрытая ветка документа. Заголовок страницы идёт первым блоком текста.
+ * Когда текст достигает maxTextLength, разбор прекращается и остаток документа не читается.
+ */
+public final class HtmlTextExtractor {
+    private static final Set<String> SKIPPED_TAGS = Set.of("script", "style", "noscript", "template", "svg");
+    private static final Pattern META_CHARSET =
+            Pattern.compile("<meta[^>]+charset\\s*=\\s*[\"']?([\\w.:-]+)", Pattern.CASE_INSENSITIVE);
+    private static final int CHARSET_SCAN_BYTES = 4096;
+
+    private HtmlTextExtractor() {
+    }
+
+    //Кодировка берётся из Content-Type, иначе из meta в начале документа, иначе UTF-8
+    public static Charset resolveCharset(byte[] html, String charset) {
+        Charset result = forName(charset);
+        if (result != null) {
+            return result;
+        }
+        String head = new String(html, 0, Math.min(html.length, CHARSET_SCAN_BYTES), StandardCharsets.ISO_8859_1);
+        Matcher matcher = META_CHARSET.matcher(head);
+        if (matcher.find()) {
+            result = forName(matcher.group(1));
+        }
+        return result != null ? result : StandardCharsets.UTF_8;
+    }
+
+    public static ExtractedPage extract(byte[] html, Charset charset, String baseUri, int maxTextLength) throws IOException {
+        StringBuilder text = new StringBuilder();
+        Set<String> links = new LinkedHashSet<>();
+        String title = "";
+        boolean truncated = false;
+        Reader reader = new InputStreamReader(new ByteArrayInputStream(html), charset);
+        try (StreamParser parser = new StreamParser(Parser.htmlParser()).parse(reader, baseUri)) {
+            Iterator<Element> elements = parser.iterator();
+            while (!truncated && elements.hasNext()) {
+                Element element = elements.next();
+                String tag = element.normalName();
+                if (tag.equals("a") && element.hasAttr("href")) {
+                    String link = element.absUrl("href");
+                    if (!link.isBlank()) {
+                        links.add(link);
+                    }
+                }
+                if (tag.equals("title")) {
+                    title = element.text();
+                    truncated = append(text, title, maxTextLength);
+                    element.remove();
+                } else if (SKIPPED_TAGS.contains(tag)) {
+                    element.remove();
+                } else if (element.isBlock()) {
+                    //строчные элементы остаются в дереве и попадают в текст ближайшего блока
+                    truncated = append(text, element.text(), maxTextLength);
+                    element.remove();
+                }
+            }
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        return new ExtractedPage(title, text.toString(), links, truncated);
+    }
+
+    private static boolean append(StringBuilder text, String blockText, int maxTextLength) {
+        if (blockText.isEmpty()) {
+            return false;
+        }
+        int available = maxTextLength - text.length();
+        if (available <= 0) {
+            return true;
+        }
+        if (!text.isEmpty()) {
+            text.append('\n');
+            available--;
+        }
+        if (blockText.length() > available) {
+            text.append(blockText, 0, Math.max(available, 0));
+            return true;
+        }
+        text.append(blockText);
+        return false;
+    }
+
+    private static Charset forName(String charset) {
+        if (charset == null || charset.isBlank()) {
+            return null;
+        }
+        try {
+            return Charset.forName(charset);
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package searchengine.util;
+
+import java.util.*;
+
+/**
+ * Префиксное дерево словаря лемм с весами (суммарной частотой леммы).
+ * Дети узла хранятся в отсортированных массивах, а каждый узел помнит максимальный вес
+ * в своём поддереве, поэтому дополнение префикса возвращает самые частые леммы без обхода
+ * всего поддерева. Нечёткий поиск считает расстояние Левенштейна построчно при обходе дерева
+ * и отсекает ветви, в которых расстояние уже превысило допустимое.
+ */
+public class LemmaTrie {
+    private static final char[] NO_LABELS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private final Node root = new Node();
+    private int size;
+
+    public static LemmaTrie of(Map<String, Integer> weights) {
+        LemmaTrie trie = new LemmaTrie();
+        weights.forEach(trie::add);
+        return trie;
+    }
+
+    public void add(String word, int weight) {
+        Node node = root;
+        node.maxWeight = Math.max(node.maxWeight, weight);
+        for (int i = 0; i < word.length(); i++) {
+            node = node.getOrAddChild(word.charAt(i));
+            node.maxWeight = Math.max(node.maxWeight, weight);
+        }
+        if (node.weight < 0) {
+            size++;
+        }
+        node.weight = Math.max(node.weight, weight);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(String word) {
+        Node node = find(word);
+        return node != null && node.weight >= 0;
+    }
+
+    //Не больше limit слов с префиксом prefix в порядке убывания веса
+    public List<String> complete(String prefix, int limit) {
+        List<String> result = new ArrayList<>();
+        Node start = find(prefix);
+        if (start == null || limit <= 0) {
+            return result;
+        }
+        PriorityQueue<Candidate> queue = new PriorityQueue<>(
+                Comparator.comparingInt(Candidate::weight).reversed());
+        queue.add(new Candidate(start, prefix, start.maxWeight, false));
+        while (!queue.isEmpty() && result.size() < limit) {
+            Candidate candidate = queue.poll();
+            if (candidate.complete()) {
+                result.add(candidate.word());
+                continue;
+            }
+            Node node = candidate.node();
+            if (node.weight >= 0) {
+                queue.add(new Candidate(node, candidate.word(), node.weight, true));
+            }
+            for (int i = 0; i < node.labels.length; i++) {
+                Node child = node.children[i];
+                queue.add(new Candidate(child, candidate.word() + node.labels[i], child.maxWeight, false));
+            }
+        }
+        return result;
+    }
+
+    //Не больше limit слов на расстоянии Левенштейна не больше maxDistance: сначала ближайшие, затем частые
+    public List<String> fuzzy(String word, int maxDistance, int limit) {
+        List<Match> matches = new ArrayList<>();
+        int[] firstRow = new int[word.length() + 1];
+        for (int i = 0; i < firstRow.length; i++) {
+            firstRow[i] = i;
+        }
+        StringBuilder path = new StringBuilder();
+        for (int i = 0; i < root.labels.length; i++) {
+            searchFuzzy(root.children[i], root.labels[i], word, firstRow, maxDistance, path, matches);
+        }
+        matches.sort(Comparator.comparingInt(Match::distance)
+                .thenComparing(Comparator.comparingInt(Match::weight).reversed()));
+        return matches.stream()
+                .limit(limit)
+                .map(Match::word)
+                .toList();
+    }
+
+    private void searchFuzzy(Node node, char label, String word, int[] previousRow, int maxDistance,
+                             StringBuilder path, List<Match> matches) {
+        int columns = word.length() + 1;
+        int[] row = new int[columns];
+        row[0] = previousRow[0] + 1;
+        int rowMin = row[0];
+        for (int i = 1; i < columns; i++) {
+            int replace = previousRow[i - 1] + (word.charAt(i - 1) == label ? 0 : 1);
+            row[i] = Math.min(Math.min(row[i - 1] + 1, previousRow[i] + 1), replace);
+            rowMin = Math.min(rowMin, row[i]);
+        }
+        path.append(label);
+        if (row[columns - 1] <= maxDistance && node.weight >= 0) {
+            matches.add(new Match(path.toString(), row[columns - 1], node.weight));
+        }
+        if (rowMin <= maxDistance) {
+            for (int i = 0; i < node.labels.length; i++) {
+                searchFuzzy(node.children[i], node.labels[i], word, row, maxDistance, path, matches);
+            }
+        }
+        path.setLength(path.length() - 1);
+    }
+
+    private Node find(String word) {
+        Node node = root;
+        for (int i = 0; i < word.length() && node != null; i++) {
+            node = node.getChild(word.charAt(i));
+        }
+        return node;
+    }
+
+    private static class Node {
+        private char[] labels = NO_LABELS;
+        private Node[] children = NO_CHILDREN;
+        //Вес слова, оканчивающегося в узле, или -1
+        private int weight = -1;
+        private int maxWeight;
+
+        private Node getChild(char label) {
+            int index = Arrays.binarySearch(labels, label);
+            return index >= 0 ? children[index] : null;
+        }
+
+        private Node getOrAddChild(char label) {
+            int index = Arrays.binarySearch(labels, label);
+            if (index >= 0) {
+                return children[index];
+            }
+            int insertAt = -index - 1;
+            char[] newLabels = new char[labels.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(labels, 0, newLabels, 0, insertAt);
+            System.arraycopy(children, 0, newChildren, 0, insertAt);
+            System.arraycopy(labels, insertAt, newLabels, insertAt + 1, labels.length - insertAt);
+            System.arraycopy(children, insertAt, newChildren, insertAt + 1, children.length - insertAt);
+            Node child = new Node();
+            newLabels[insertAt] = label;
+            newChildren[insertAt] = child;
+            labels = newLabels;
+            children = newChildren;
+            return child;
+        }
+    }
+
+    private record Candidate(Node node, String word, int weight, boolean complete) {
+    }
+
+    private record Match(String word, int distance, int weight) {
+    }
+}
@@ -0,0 +1,107 @@
+package searchengine.util;
+
+/**
+ * Множество long без упаковки в Long: открытая адресация с линейным пробированием.
+ * Значение 0 хранится отдельным флагом. Не потокобезопасно.
+ */
+public class LongHashSet {
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] table;
+    private int size;
+    private boolean containsZero;
+
+    public LongHashSet() {
+        this(1024);
+    }
+
+    public LongHashSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        table = new long[capacity];
+    }
+
+    public boolean add(long value) {
+        if (value == 0) {
+            if (containsZero) {
+                return false;
+            }
+            containsZero = true;
+            size++;
+            return true;
+        }
+        if (size + 1 > table.length * LOAD_FACTOR) {
+            resize();
+        }
+        if (!insert(table, value)) {
+            return false;
+        }
+        size++;
+        return true;
+    }
+
+    public boolean contains(long value) {
+        if (value == 0) {
+            return containsZero;
+        }
+        int mask = table.length - 1;
+        for (int i = index(value, mask); ; i = (i + 1) & mask) {
+            long current = table[i];
+            if (current == 0) {
+                return false;
+            }
+            if (current == value) {
+                return true;
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long[] toArray() {
+        long[] values = new long[size];
+        int index = 0;
+        if (containsZero) {
+            values[index++] = 0;
+        }
+        for (long value : table) {
+            if (value != 0) {
+                values[index++] = value;
+            }
+        }
+        return values;
+    }
+
+    private static boolean insert(long[] target, long value) {
+        int mask = target.length - 1;
+        for (int i = index(value, mask); ; i = (i + 1) & mask) {
+            long current = target[i];
+            if (current == 0) {
+                target[i] = value;
+                return true;
+            }
+            if (current == value) {
+                return false;
+            }
+        }
+    }
+
+    private void resize() {
+        long[] resized = new long[table.length * 2];
+        for (long value : table) {
+            if (value != 0) {
+                insert(resized, value);
+            }
+        }
+        table = resized;
+    }
+
+    private static int index(long value, int mask) {
+        return (int) (value ^ (value >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,48 @@
+package searchengine.util;
+
+import org.apache.lucene.morphology.LuceneMorphology;
+import org.apache.lucene.morphology.english.EnglishLuceneMorphology;
+import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
+
+import java.io.IOException;
+
+/**
+ * Общие на всю JVM словари морфологии. Словарь загружается при первом обращении к нему и больше
+ * не перезагружается, в том числе при повторном создании контекста Spring.
+ * После загрузки LuceneMorphology только читает свои массивы, а состояние анализа слова создаёт
+ * заново при каждом вызове, поэтому один экземпляр используется всеми потоками без блокировок.
+ */
+public class Morphologies {
+
+    private Morphologies() {
+    }
+
+    public static LuceneMorphology russian() {
+        return RussianHolder.INSTANCE;
+    }
+
+    public static LuceneMorphology english() {
+        return EnglishHolder.INSTANCE;
+    }
+
+    //Классы-держатели загружаются JVM потокобезопасно и только при первом обращении
+    private static class RussianHolder {
+        private static final LuceneMorphology INSTANCE = load(RussianLuceneMorphology::new);
+    }
+
+    private static class EnglishHolder {
+        private static final LuceneMorphology INSTANCE = load(EnglishLuceneMorphology::new);
+    }
+
+    private static LuceneMorphology load(MorphologyLoader loader) {
+        try {
+            return loader.load();
+        } catch (IOException e) {
+            throw new RuntimeException("Не удалось инициализировать LuceneMorphology", e);
+        }
+    }
+
+    private interface MorphologyLoader {
+        LuceneMorphology load() throws IOException;
+    }
+}
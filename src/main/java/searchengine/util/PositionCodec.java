@@ -0,0 +1,52 @@
+package searchengine.util;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+/**
+ * Кодирование возрастающего списка позиций леммы на странице: разности соседних позиций
+ * записываются как varint (7 бит на байт), поэтому близкие позиции занимают по одному байту.
+ */
+public class PositionCodec {
+
+    public static byte[] encode(List<Integer> positions) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(positions.size() + 4);
+        int previous = 0;
+        for (int position : positions) {
+            int delta = position - previous;
+            while ((delta & ~0x7F) != 0) {
+                out.write((delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            out.write(delta);
+            previous = position;
+        }
+        return out.toByteArray();
+    }
+
+    public static int[] decode(byte[] encoded) {
+        int count = 0;
+        for (byte b : encoded) {
+            if ((b & 0x80) == 0) {
+                count++;
+            }
+        }
+        int[] positions = new int[count];
+        int previous = 0;
+        int index = 0;
+        int delta = 0;
+        int shift = 0;
+        for (byte b : encoded) {
+            delta |= (b & 0x7F) << shift;
+            if ((b & 0x80) != 0) {
+                shift += 7;
+                continue;
+            }
+            previous += delta;
+            positions[index++] = previous;
+            delta = 0;
+            shift = 0;
+        }
+        return positions;
+    }
+}
@@ -0,0 +1,46 @@
+package searchengine.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Близость слов запроса на странице по их позициям (номерам слов в тексте).
+ */
+public class Proximity {
+
+    //Множитель релевантности: от 1 до 1 + weight, когда все слова запроса стоят подряд;
+    //считается по наименьшему окну текста, содержащему все леммы запроса
+    public static double getBoost(Collection<int[]> positions, double weight) {
+        int lemmaCount = positions.size();
+        if (lemmaCount < 2) {
+            return 1.0;
+        }
+        int window = getMinWindow(new ArrayList<>(positions));
+        return 1.0 + weight * (lemmaCount - 1) / Math.max(window, lemmaCount - 1);
+    }
+
+    //Наименьшая разность между максимальной и минимальной позицией, взятых по одной из каждого списка
+    public static int getMinWindow(List<int[]> positions) {
+        PriorityQueue<int[]> heads = new PriorityQueue<>(
+                Comparator.comparingInt((int[] head) -> positions.get(head[0])[head[1]]));
+        int max = Integer.MIN_VALUE;
+        for (int i = 0; i < positions.size(); i++) {
+            heads.add(new int[]{i, 0});
+            max = Math.max(max, positions.get(i)[0]);
+        }
+        int best = Integer.MAX_VALUE;
+        while (true) {
+            int[] head = heads.poll();
+            int[] list = positions.get(head[0]);
+            best = Math.min(best, max - list[head[1]]);
+            if (++head[1] == list.length) {
+                return best;
+            }
+            max = Math.max(max, list[head[1]]);
+            heads.add(head);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package searchengine.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Правила robots.txt для группы, подходящей под User-Agent краулера.
+ * Поддерживаются Allow/Disallow с шаблонами '*' и '$' (побеждает самое длинное совпадение,
+ * при равной длине - Allow), Crawl-delay и строки Sitemap.
+ */
+public class RobotsRules {
+    private static final long MAX_CRAWL_DELAY_MILLIS = 60_000;
+    private static final RobotsRules ALLOW_ALL = new RobotsRules(List.of(), 0, List.of());
+
+    private final List<Rule> rules;
+    private final long crawlDelayMillis;
+    private final List<String> sitemaps;
+
+    private RobotsRules(List<Rule> rules, long crawlDelayMillis, List<String> sitemaps) {
+        this.rules = rules;
+        this.crawlDelayMillis = crawlDelayMillis;
+        this.sitemaps = sitemaps;
+    }
+
+    public static RobotsRules allowAll() {
+        return ALLOW_ALL;
+    }
+
+    public static RobotsRules parse(String content, String userAgent) {
+        String agent = userAgent == null ? "" : userAgent.toLowerCase(Locale.ROOT);
+        List<Group> groups = new ArrayList<>();
+        List<String> sitemaps = new ArrayList<>();
+        Group current = null;
+        boolean readingAgents = false;
+
+        for (String rawLine : content.split("\\r?\\n|\\r")) {
+            int comment = rawLine.indexOf('#');
+            String line = (comment >= 0 ? rawLine.substring(0, comment) : rawLine).trim();
+            int colon = line.indexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            String key = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim();
+            switch (key) {
+                case "user-agent" -> {
+                    if (!readingAgents) {
+                        current = new Group();
+                        groups.add(current);
+                        readingAgents = true;
+                    }
+                    current.agents.add(value.toLowerCase(Locale.ROOT));
+                }
+                case "allow", "disallow" -> {
+                    readingAgents = false;
+                    if (current != null && !value.isEmpty()) {
+                        current.rules.add(new Rule(value, key.equals("allow")));
+                    }
+                }
+                case "crawl-delay" -> {
+                    readingAgents = false;
+                    if (current != null) {
+                        current.crawlDelayMillis = parseCrawlDelay(value);
+                    }
+                }
+                case "sitemap" -> sitemaps.add(value);
+                default -> readingAgents = false;
+            }
+        }
+
+        List<Group> matched = groups.stream()
+                .filter(group -> group.agents.stream().anyMatch(a -> !a.equals("*") && agent.contains(a)))
+                .toList();
+        if (matched.isEmpty()) {
+            matched = groups.stream().filter(group -> group.agents.contains("*")).toList();
+        }
+        List<Rule> rules = new ArrayList<>();
+        long crawlDelay = 0;
+        for (Group group : matched) {
+            rules.addAll(group.rules);
+            crawlDelay = Math.max(crawlDelay, group.crawlDelayMillis);
+        }
+        rules.sort(Comparator.comparingInt((Rule rule) -> rule.length).reversed()
+                .thenComparing(rule -> !rule.allow));
+        return new RobotsRules(List.copyOf(rules), crawlDelay, List.copyOf(sitemaps));
+    }
+
+    //path - путь URL вместе со строкой запроса, начинающийся с '/'
+    public boolean isAllowed(String path) {
+        for (Rule rule : rules) {
+            if (rule.pattern.matcher(path).lookingAt()) {
+                return rule.allow;
+            }
+        }
+        return true;
+    }
+
+    public long getCrawlDelayMillis() {
+        return crawlDelayMillis;
+    }
+
+    public List<String> getSitemaps() {
+        return sitemaps;
+    }
+
+    private static long parseCrawlDelay(String value) {
+        try {
+            double seconds = Double.parseDouble(value);
+            return Math.min(MAX_CRAWL_DELAY_MILLIS, Math.max(0, (long) (seconds * 1000)));
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+
+    private static class Group {
+        private final List<String> agents = new ArrayList<>();
+        private final List<Rule> rules = new ArrayList<>();
+        private long crawlDelayMillis;
+    }
+
+    private static class Rule {
+        private final Pattern pattern;
+        private final int length;
+        private final boolean allow;
+
+        Rule(String value, boolean allow) {
+            this.length = value.length();
+            this.allow = allow;
+            boolean anchored = value.endsWith("$");
+            String body = anchored ? value.substring(0, value.length() - 1) : value;
+            StringBuilder regex = new StringBuilder();
+            for (String part : body.split("\\*", -1)) {
+                if (!regex.isEmpty()) {
+                    regex.append(".*");
+                }
+                regex.append(Pattern.quote(part));
+            }
+            if (anchored) {
+                regex.append('$');
+            }
+            this.pattern = Pattern.compile(regex.toString());
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package searchengine.util;
+
+import java.util.Map;
+
+/**
+ * 64-битный SimHash по взвешенному набору лемм страницы: у похожих страниц отпечатки
+ * отличаются в небольшом числе бит, что позволяет находить почти дубликаты по расстоянию Хэмминга.
+ */
+public class SimHash {
+    private static final int BITS = 64;
+
+    public static long of(Map<String, Integer> weightedTerms) {
+        long[] weights = new long[BITS];
+        for (Map.Entry<String, Integer> term : weightedTerms.entrySet()) {
+            long hash = hash(term.getKey());
+            int weight = term.getValue();
+            for (int bit = 0; bit < BITS; bit++) {
+                weights[bit] += ((hash >>> bit) & 1) == 1 ? weight : -weight;
+            }
+        }
+        long result = 0;
+        for (int bit = 0; bit < BITS; bit++) {
+            if (weights[bit] > 0) {
+                result |= 1L << bit;
+            }
+        }
+        return result;
+    }
+
+    public static int distance(long first, long second) {
+        return Long.bitCount(first ^ second);
+    }
+
+    //String.hashCode, растянутый до 64 бит финальным перемешиванием MurmurHash3
+    private static long hash(String term) {
+        long hash = term.hashCode() * 0x9e3779b97f4a7c15L;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,77 @@
+package searchengine.util;
+
+import java.util.*;
+
+/**
+ * Поиск отпечатков SimHash на расстоянии не больше maxDistance бит.
+ * Отпечаток делится на 4 полосы по 16 бит: если два отпечатка отличаются не больше чем в 3 битах,
+ * хотя бы одна полоса у них совпадает, поэтому сравниваются только отпечатки с общей полосой.
+ * При maxDistance больше 3 часть близких отпечатков может быть пропущена.
+ */
+public class SimHashIndex {
+    private static final int BANDS = 4;
+    private static final int BAND_BITS = 64 / BANDS;
+    private static final long BAND_MASK = (1L << BAND_BITS) - 1;
+
+    private final int maxDistance;
+    private final List<Map<Integer, List<Entry>>> bands = new ArrayList<>();
+    private final Map<Integer, Long> hashByPage = new HashMap<>();
+
+    public SimHashIndex(int maxDistance) {
+        this.maxDistance = maxDistance;
+        for (int i = 0; i < BANDS; i++) {
+            bands.add(new HashMap<>());
+        }
+    }
+
+    //id страницы с близким отпечатком или пусто
+    public synchronized OptionalInt findNear(long hash) {
+        for (int band = 0; band < BANDS; band++) {
+            List<Entry> candidates = bands.get(band).get(bandValue(hash, band));
+            if (candidates == null) {
+                continue;
+            }
+            for (Entry candidate : candidates) {
+                if (SimHash.distance(hash, candidate.hash) <= maxDistance) {
+                    return OptionalInt.of(candidate.pageId);
+                }
+            }
+        }
+        return OptionalInt.empty();
+    }
+
+    public synchronized void add(long hash, int pageId) {
+        remove(pageId);
+        Entry entry = new Entry(hash, pageId);
+        for (int band = 0; band < BANDS; band++) {
+            bands.get(band).computeIfAbsent(bandValue(hash, band), key -> new ArrayList<>()).add(entry);
+        }
+        hashByPage.put(pageId, hash);
+    }
+
+    public synchronized void remove(int pageId) {
+        Long hash = hashByPage.remove(pageId);
+        if (hash == null) {
+            return;
+        }
+        for (int band = 0; band < BANDS; band++) {
+            int key = bandValue(hash, band);
+            List<Entry> entries = bands.get(band).get(key);
+            entries.removeIf(entry -> entry.pageId == pageId);
+            if (entries.isEmpty()) {
+                bands.get(band).remove(key);
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return hashByPage.size();
+    }
+
+    private static int bandValue(long hash, int band) {
+        return (int) ((hash >>> (band * BAND_BITS)) & BAND_MASK);
+    }
+
+    private record Entry(long hash, int pageId) {
+    }
+}
@@ -0,0 +1,107 @@
+package searchengine.util;
+
+import searchengine.dto.index.SitemapUrl;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.function.Consumer;
+
+/**
+ * Потоковый (StAX) разбор sitemap.xml и индексов sitemap без построения DOM.
+ * Элементы &lt;url&gt; передаются в urlConsumer, ссылки &lt;sitemap&gt;&lt;loc&gt; индекса - в sitemapConsumer.
+ */
+public class SitemapReader {
+    private static final double DEFAULT_PRIORITY = 0.5;
+    private static final XMLInputFactory XML_INPUT_FACTORY = createFactory();
+
+    public static void read(InputStream input,
+                            Consumer<SitemapUrl> urlConsumer,
+                            Consumer<String> sitemapConsumer) throws XMLStreamException {
+        XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(input);
+        try {
+            StringBuilder text = new StringBuilder();
+            String loc = null;
+            String lastmod = null;
+            String priority = null;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    text.setLength(0);
+                    String name = reader.getLocalName();
+                    if (name.equals("url") || name.equals("sitemap")) {
+                        loc = null;
+                        lastmod = null;
+                        priority = null;
+                    }
+                } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+                    text.append(reader.getText());
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    switch (reader.getLocalName()) {
+                        case "loc" -> loc = text.toString().trim();
+                        case "lastmod" -> lastmod = text.toString().trim();
+                        case "priority" -> priority = text.toString().trim();
+                        case "url" -> {
+                            if (loc != null && !loc.isEmpty()) {
+                                urlConsumer.accept(new SitemapUrl(loc, parseLastmod(lastmod), parsePriority(priority)));
+                            }
+                        }
+                        case "sitemap" -> {
+                            if (loc != null && !loc.isEmpty()) {
+                                sitemapConsumer.accept(loc);
+                            }
+                        }
+                        default -> {
+                        }
+                    }
+                    text.setLength(0);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    //W3C Datetime: "2024-01-01" или "2024-01-01T12:00:00+03:00"
+    private static Instant parseLastmod(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return OffsetDateTime.parse(value).toInstant();
+        } catch (DateTimeParseException ex) {
+            try {
+                return LocalDate.parse(value.length() > 10 ? value.substring(0, 10) : value)
+                        .atStartOfDay().toInstant(ZoneOffset.UTC);
+            } catch (DateTimeParseException ignored) {
+                return null;
+            }
+        }
+    }
+
+    private static double parsePriority(String value) {
+        if (value == null || value.isEmpty()) {
+            return DEFAULT_PRIORITY;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException ex) {
+            return DEFAULT_PRIORITY;
+        }
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+}
@@ -0,0 +1,271 @@
+package searchengine.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Сниппет предложения для запроса. Предложение разбивается на слова с их смещениями за один проход,
+ * лемма каждого слова сравнивается с леммами запроса по номеру леммы. Из окон текста длиной не больше
+ * maxLength выбирается окно с наибольшим числом разных лемм запроса, затем - с наибольшим числом
+ * совпадений и наименьшей длиной. Окно дополняется контекстом до maxLength по границам слов, текст
+ * выводится как есть, с исходной пунктуацией, а совпавшие слова выделяются тегом &lt;b&gt;.
+ * Для страницы целиком окна сравниваются по всем предложениям и возвращается один лучший фрагмент.
+ */
+public class SnippetExtractor {
+    private static final String ELLIPSIS = "...";
+    //Слов страницы, после которых поиск лучшего фрагмента прекращается
+    private static final int MAX_TOKENS_PER_PAGE = 20_000;
+
+    private final Map<String, Integer> lemmaIds = new HashMap<>();
+    private final Function<String, String> lemmatizer;
+    private final int maxLength;
+
+    public SnippetExtractor(Collection<String> lemmas, Function<String, String> lemmatizer, int maxLength) {
+        for (String lemma : lemmas) {
+            lemmaIds.putIfAbsent(lemma, lemmaIds.size());
+        }
+        this.lemmatizer = lemmatizer;
+        this.maxLength = maxLength;
+    }
+
+    public SnippetResult extract(String sentence) {
+        Tokens tokens = tokenize(sentence);
+        Window window = findBestWindow(tokens);
+        if (window == null) {
+            return new SnippetResult("", 0, 0);
+        }
+        return new SnippetResult(render(sentence, tokens, window), window.matchCount, window.distinctCount);
+    }
+
+    //Лучший фрагмент страницы. Предложения просматриваются по порядку, пока не найдено окно со всеми
+    //леммами запроса на половине длины сниппета или не исчерпан лимит слов страницы
+    public SnippetResult extractBest(List<String> sentences) {
+        String bestSentence = null;
+        Tokens bestTokens = null;
+        Window best = null;
+        int scannedTokens = 0;
+        for (String sentence : sentences) {
+            Tokens tokens = tokenize(sentence);
+            Window window = findBestWindow(tokens);
+            if (window != null && window.isBetterThan(best)) {
+                bestSentence = sentence;
+                bestTokens = tokens;
+                best = window;
+                if (best.distinctCount == lemmaIds.size() && best.length <= maxLength / 2) {
+                    break;
+                }
+            }
+            scannedTokens += tokens.size;
+            if (scannedTokens >= MAX_TOKENS_PER_PAGE) {
+                break;
+            }
+        }
+        if (best == null) {
+            return new SnippetResult("", 0, 0);
+        }
+        return new SnippetResult(render(bestSentence, bestTokens, best), best.matchCount, best.distinctCount);
+    }
+
+    //Слова предложения: смещения начала и конца и номер леммы запроса (-1, если слово не из запроса)
+    private Tokens tokenize(String sentence) {
+        Tokens tokens = new Tokens(sentence.length() / 6 + 4);
+        int length = sentence.length();
+        int i = 0;
+        while (i < length) {
+            if (!Character.isLetterOrDigit(sentence.charAt(i))) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < length && (Character.isLetterOrDigit(sentence.charAt(i))
+                    || (isJoiner(sentence.charAt(i)) && i + 1 < length && Character.isLetterOrDigit(sentence.charAt(i + 1))))) {
+                i++;
+            }
+            int lemmaId = -1;
+            if (i - start > 1) {
+                Integer id = lemmaIds.get(lemmatizer.apply(sentence.substring(start, i)));
+                lemmaId = id != null ? id : -1;
+            }
+            tokens.add(start, i, lemmaId);
+        }
+        return tokens;
+    }
+
+    private boolean isJoiner(char c) {
+        return c == '-' || c == '\'' || c == '’';
+    }
+
+    //Скользящее окно по совпавшим словам: для каждого правого края левый край сдвигается,
+    //пока окно не уложится в maxLength, поэтому каждое совпадение входит и выходит из окна один раз.
+    //Окно не становится меньше одного слова: слово длиннее maxLength обрезается при выводе
+    private Window findBestWindow(Tokens tokens) {
+        int[] matches = tokens.matches();
+        if (matches.length == 0) {
+            return null;
+        }
+        int[] counts = new int[lemmaIds.size()];
+        int distinct = 0;
+        int left = 0;
+        Window best = null;
+        for (int right = 0; right < matches.length; right++) {
+            if (counts[tokens.lemmaIds[matches[right]]]++ == 0) {
+                distinct++;
+            }
+            while (left < right && tokens.ends[matches[right]] - tokens.starts[matches[left]] > maxLength) {
+                if (--counts[tokens.lemmaIds[matches[left]]] == 0) {
+                    distinct--;
+                }
+                left++;
+            }
+            Window window = new Window(matches[left], matches[right], distinct, right - left + 1,
+                    tokens.ends[matches[right]] - tokens.starts[matches[left]]);
+            if (window.isBetterThan(best)) {
+                best = window;
+            }
+        }
+        return best;
+    }
+
+    //Окно дополняется контекстом поровну слева и справа, обрезка - по границам слов
+    private String render(String sentence, Tokens tokens, Window window) {
+        int windowStart = tokens.starts[window.firstToken];
+        int windowEnd = tokens.ends[window.lastToken];
+        if (windowEnd - windowStart > maxLength) {
+            //одно совпавшее слово длиннее сниппета: выводится его начало
+            StringBuilder snippet = new StringBuilder(maxLength + 16);
+            if (windowStart > 0) {
+                snippet.append(ELLIPSIS);
+            }
+            snippet.append("<b>");
+            appendEscaped(snippet, sentence, windowStart, windowStart + maxLength);
+            return snippet.append("</b>").append(ELLIPSIS).toString();
+        }
+        int extra = Math.max(maxLength - (windowEnd - windowStart), 0);
+        int fromToken = window.firstToken;
+        int leftExtra = extra / 2;
+        while (fromToken > 0 && windowStart - tokens.starts[fromToken - 1] <= leftExtra) {
+            fromToken--;
+        }
+        int start = fromToken > 0 ? tokens.starts[fromToken] : 0;
+        int rightExtra = extra - (windowStart - start);
+        int toToken = window.lastToken;
+        while (toToken + 1 < tokens.size && tokens.ends[toToken + 1] - windowEnd <= rightExtra) {
+            toToken++;
+        }
+        int end = toToken + 1 < tokens.size ? tokens.ends[toToken] : sentence.length();
+
+        StringBuilder snippet = new StringBuilder(end - start + 32);
+        if (start > 0) {
+            snippet.append(ELLIPSIS);
+        }
+        int position = start;
+        for (int token = fromToken; token <= toToken; token++) {
+            if (tokens.lemmaIds[token] < 0) {
+                continue;
+            }
+            appendEscaped(snippet, sentence, position, tokens.starts[token]);
+            snippet.append("<b>");
+            appendEscaped(snippet, sentence, tokens.starts[token], tokens.ends[token]);
+            snippet.append("</b>");
+            position = tokens.ends[token];
+        }
+        appendEscaped(snippet, sentence, position, end);
+        if (end < sentence.length()) {
+            snippet.append(ELLIPSIS);
+        }
+        return snippet.toString().trim();
+    }
+
+    private void appendEscaped(StringBuilder snippet, String text, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<' -> snippet.append("&lt;");
+                case '>' -> snippet.append("&gt;");
+                case '&' -> snippet.append("&amp;");
+                default -> snippet.append(c);
+            }
+        }
+    }
+
+    private record Window(int firstToken, int lastToken, int distinctCount, int matchCount, int length) {
+        private boolean isBetterThan(Window other) {
+            if (other == null) {
+                return true;
+            }
+            if (distinctCount != other.distinctCount) {
+                return distinctCount > other.distinctCount;
+            }
+            if (matchCount != other.matchCount) {
+                return matchCount > other.matchCount;
+            }
+            return length < other.length;
+        }
+    }
+
+    //Параллельные массивы слов предложения
+    private static class Tokens {
+        private int[] starts;
+        private int[] ends;
+        private int[] lemmaIds;
+        private int size;
+        private int matchCount;
+
+        private Tokens(int capacity) {
+            starts = new int[capacity];
+            ends = new int[capacity];
+            lemmaIds = new int[capacity];
+        }
+
+        private void add(int start, int end, int lemmaId) {
+            if (size == starts.length) {
+                int capacity = size * 2;
+                starts = Arrays.copyOf(starts, capacity);
+                ends = Arrays.copyOf(ends, capacity);
+                lemmaIds = Arrays.copyOf(lemmaIds, capacity);
+            }
+            starts[size] = start;
+            ends[size] = end;
+            lemmaIds[size] = lemmaId;
+            size++;
+            if (lemmaId >= 0) {
+                matchCount++;
+            }
+        }
+
+        //Номера слов, совпавших с леммами запроса
+        private int[] matches() {
+            int[] matches = new int[matchCount];
+            int index = 0;
+            for (int i = 0; i < size; i++) {
+                if (lemmaIds[i] >= 0) {
+                    matches[index++] = i;
+                }
+            }
+            return matches;
+        }
+    }
+
+    public static class SnippetResult {
+        private final String snippet;
+        private final int matchCount;
+        private final int distinctCount;
+
+        public SnippetResult(String snippet, int matchCount, int distinctCount) {
+            this.snippet = snippet;
+            this.matchCount = matchCount;
+            this.distinctCount = distinctCount;
+        }
+
+        public String getSnippet() { return snippet; }
+        //Совпавших слов в сниппете
+        public int getMatchCount() { return matchCount; }
+        //Разных лемм запроса в сниппете
+        public int getDistinctCount() { return distinctCount; }
+        public boolean hasMatches() { return matchCount > 0; }
+    }
+}
@@ -0,0 +1,185 @@
+package searchengine.util;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.*;
+
+/**
+ * Приведение ссылок сайта к каноническому виду перед добавлением в очередь обхода,
+ * чтобы варианты одного адреса не загружались повторно:
+ * <ul>
+ *     <li>схема и хост в нижнем регистре, адреса того же хоста с www. и без него, по http и https
+ *     приводятся к схеме и хосту сайта из конфигурации;</li>
+ *     <li>порт по умолчанию убирается;</li>
+ *     <li>в пути убираются повторные '/', сегменты '.' и '..', завершающий '/' (кроме корня),
+ *     escape-последовательности приводятся к верхнему регистру;</li>
+ *     <li>фрагмент удаляется, параметры запроса из списка (шаблон "utm_*" - по префиксу)
+ *     удаляются, остальные сортируются.</li>
+ * </ul>
+ * Регистр пути не меняется: пути на сервере могут быть регистрозависимыми.
+ */
+public class UrlCanonicalizer {
+    private final String siteScheme;
+    private final String siteHost;
+    private final int sitePort;
+    private final String siteHostKey;
+    private final String sitePrefix;
+    private final Set<String> strippedParams = new HashSet<>();
+    private final List<String> strippedParamPrefixes = new ArrayList<>();
+
+    public UrlCanonicalizer(String siteUrl, Collection<String> strippedQueryParams) {
+        URI uri = UrlValidator.getUri(siteUrl);
+        this.siteScheme = uri.getScheme().toLowerCase(Locale.ROOT);
+        this.siteHost = uri.getHost().toLowerCase(Locale.ROOT);
+        this.sitePort = uri.getPort() == defaultPort(siteScheme) ? -1 : uri.getPort();
+        this.siteHostKey = stripWww(siteHost);
+        this.sitePrefix = siteScheme + "://" + siteHost + (sitePort != -1 ? ":" + sitePort : "") + "/";
+        for (String param : strippedQueryParams) {
+            String name = param.toLowerCase(Locale.ROOT);
+            if (name.endsWith("*")) {
+                strippedParamPrefixes.add(name.substring(0, name.length() - 1));
+            } else {
+                strippedParams.add(name);
+            }
+        }
+    }
+
+    //Адрес главной страницы сайта в каноническом виде, всегда оканчивается на '/'
+    public String getSitePrefix() {
+        return sitePrefix;
+    }
+
+    //Канонический адрес или null, если ссылка не является http(s) адресом
+    public String canonicalize(String url) {
+        if (url == null || url.isBlank()) {
+            return null;
+        }
+        URI uri;
+        try {
+            uri = new URI(url.trim());
+        } catch (URISyntaxException ex) {
+            return null;
+        }
+        String scheme = uri.getScheme();
+        String host = uri.getHost();
+        if (scheme == null || host == null) {
+            return null;
+        }
+        scheme = scheme.toLowerCase(Locale.ROOT);
+        if (!scheme.equals("http") && !scheme.equals("https")) {
+            return null;
+        }
+        host = host.toLowerCase(Locale.ROOT);
+        int port = uri.getPort() == defaultPort(scheme) ? -1 : uri.getPort();
+        if (stripWww(host).equals(siteHostKey) && (port == -1 || port == sitePort)) {
+            scheme = siteScheme;
+            host = siteHost;
+            port = sitePort;
+        }
+
+        StringBuilder result = new StringBuilder(url.length());
+        result.append(scheme).append("://").append(host);
+        if (port != -1) {
+            result.append(':').append(port);
+        }
+        result.append(normalizePath(uri.getRawPath()));
+        String query = normalizeQuery(uri.getRawQuery());
+        if (!query.isEmpty()) {
+            result.append('?').append(query);
+        }
+        return result.toString();
+    }
+
+    /**
+     * Проверка канонического адреса на принадлежность сайту: адрес начинается с адреса сайта,
+     * длиннее него и после него не содержит '?', '.' и '#' (запросы и файлы не обходятся).
+     * Сравнение посимвольное, без регулярного выражения и без создания объектов.
+     */
+    public boolean isInternal(String canonicalUrl) {
+        return UrlValidator.isInternalUrl(canonicalUrl, sitePrefix);
+    }
+
+    private String normalizePath(String rawPath) {
+        if (rawPath == null || rawPath.isEmpty()) {
+            return "/";
+        }
+        Deque<String> segments = new ArrayDeque<>();
+        for (String segment : rawPath.split("/")) {
+            if (segment.isEmpty() || segment.equals(".")) {
+                continue;
+            }
+            if (segment.equals("..")) {
+                segments.pollLast();
+            } else {
+                segments.addLast(upperCaseEscapes(segment));
+            }
+        }
+        if (segments.isEmpty()) {
+            return "/";
+        }
+        StringBuilder path = new StringBuilder(rawPath.length());
+        for (String segment : segments) {
+            path.append('/').append(segment);
+        }
+        return path.toString();
+    }
+
+    private String normalizeQuery(String rawQuery) {
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return "";
+        }
+        List<String> params = new ArrayList<>();
+        for (String param : rawQuery.split("&")) {
+            if (param.isEmpty()) {
+                continue;
+            }
+            int eq = param.indexOf('=');
+            String name = (eq < 0 ? param : param.substring(0, eq)).toLowerCase(Locale.ROOT);
+            if (!isStripped(name)) {
+                params.add(upperCaseEscapes(param));
+            }
+        }
+        Collections.sort(params);
+        return String.join("&", params);
+    }
+
+    private boolean isStripped(String name) {
+        if (strippedParams.contains(name)) {
+            return true;
+        }
+        for (String prefix : strippedParamPrefixes) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String upperCaseEscapes(String value) {
+        int percent = value.indexOf('%');
+        if (percent < 0) {
+            return value;
+        }
+        char[] chars = value.toCharArray();
+        for (int i = percent; i < chars.length - 2; i++) {
+            if (chars[i] == '%') {
+                chars[i + 1] = Character.toUpperCase(chars[i + 1]);
+                chars[i + 2] = Character.toUpperCase(chars[i + 2]);
+                i += 2;
+            }
+        }
+        return new String(chars);
+    }
+
+    private static String stripWww(String host) {
+        return host.startsWith("www.") ? host.substring(4) : host;
+    }
+
+    private static int defaultPort(String scheme) {
+        return switch (scheme.toLowerCase(Locale.ROOT)) {
+            case "http" -> 80;
+            case "https" -> 443;
+            default -> -1;
+        };
+    }
+}
@@ -0,0 +1,24 @@
+package searchengine.util;
+
+/**
+ * 64-битный отпечаток URL (FNV-1a с финальным перемешиванием MurmurHash3).
+ * Хранится вместо строки в множестве посещённых адресов и в контрольных точках обхода.
+ */
+public class UrlFingerprint {
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    public static long of(String url) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < url.length(); i++) {
+            hash ^= url.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
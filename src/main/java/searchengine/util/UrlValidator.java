@@ -5,7 +5,6 @@ import java.net.URI;
 import java.net.URL;
 
 public class UrlValidator {
-    private static final String MASK = "[^?.#]+";
 
     private static boolean isValidUrl(String url) {
         if (url == null || url.isBlank()) {
@@ -48,10 +47,18 @@ public class UrlValidator {
         return uri.getScheme() + "://" + uri.getHost() + "/";
     }
 
+    //Адрес начинается с адреса сайта и после него непуст и не содержит '?', '.' и '#'
     public static boolean isInternalUrl(String url, String siteUrl) {
-        String mask = siteUrl + MASK;
-
-        return url.matches(mask);
+        if (url.length() <= siteUrl.length() || !url.startsWith(siteUrl)) {
+            return false;
+        }
+        for (int i = siteUrl.length(); i < url.length(); i++) {
+            char c = url.charAt(i);
+            if (c == '?' || c == '.' || c == '#') {
+                return false;
+            }
+        }
+        return true;
     }
 
 
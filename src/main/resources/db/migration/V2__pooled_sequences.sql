@@ -0,0 +1,22 @@
+-- V2__pooled_sequences.sql
+-- Переход с SERIAL/IDENTITY на последовательности с шагом 50 (pooled-оптимизатор Hibernate),
+-- чтобы Hibernate мог выделять id пачками и отправлять INSERT-ы батчами.
+
+-- Значения по умолчанию у столбцов id больше не используются: id назначает Hibernate
+ALTER TABLE site ALTER COLUMN id DROP DEFAULT;
+ALTER TABLE page ALTER COLUMN id DROP DEFAULT;
+ALTER TABLE lemma ALTER COLUMN id DROP DEFAULT;
+ALTER TABLE search_index ALTER COLUMN id DROP DEFAULT;
+
+-- Шаг последовательностей должен совпадать с allocationSize в сущностях
+ALTER SEQUENCE site_id_seq INCREMENT BY 50;
+ALTER SEQUENCE page_id_seq INCREMENT BY 50;
+ALTER SEQUENCE lemma_id_seq INCREMENT BY 50;
+ALTER SEQUENCE search_index_id_seq INCREMENT BY 50;
+
+-- pooled-оптимизатор считает значение последовательности верхней границей выделенного блока,
+-- поэтому текущее значение выставляется в max(id): следующий блок начнётся с max(id) + 1
+SELECT setval('site_id_seq', GREATEST((SELECT MAX(id) FROM site), 1));
+SELECT setval('page_id_seq', GREATEST((SELECT MAX(id) FROM page), 1));
+SELECT setval('lemma_id_seq', GREATEST((SELECT MAX(id) FROM lemma), 1));
+SELECT setval('search_index_id_seq', GREATEST((SELECT MAX(id) FROM search_index), 1));
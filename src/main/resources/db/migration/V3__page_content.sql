@@ -0,0 +1,11 @@
+-- V3__page_content.sql
+-- Содержимое страниц хранится отдельно от таблицы page в сжатом виде (Deflate)
+-- и загружается только при формировании сниппетов и переиндексации страницы.
+-- Перенос существующего содержимого выполняет Java-миграция V4__CompressPageContent.
+
+CREATE TABLE IF NOT EXISTS page_content (
+    page_id INTEGER PRIMARY KEY,
+    content BYTEA NOT NULL,
+    content_length INTEGER NOT NULL,
+    FOREIGN KEY (page_id) REFERENCES page(id) ON DELETE CASCADE
+);
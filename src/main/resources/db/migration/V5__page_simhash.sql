@@ -0,0 +1,6 @@
+-- V5__page_simhash.sql
+-- Отпечаток SimHash лемм страницы и ссылка на страницу-оригинал для почти дубликатов.
+-- duplicate_of заполняется только у дубликатов; при удалении оригинала ссылка сбрасывается.
+
+ALTER TABLE page ADD COLUMN IF NOT EXISTS simhash BIGINT;
+ALTER TABLE page ADD COLUMN IF NOT EXISTS duplicate_of INTEGER REFERENCES page(id) ON DELETE SET NULL;
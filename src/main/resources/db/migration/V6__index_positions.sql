@@ -0,0 +1,6 @@
+-- V6__index_positions.sql
+-- Позиции леммы на странице (номера слов в тексте), разности в формате varint (см. PositionCodec).
+-- У страниц, проиндексированных до появления столбца, позиций нет: фразовый поиск и
+-- учёт близости слов для них не применяются до переиндексации.
+
+ALTER TABLE search_index ADD COLUMN IF NOT EXISTS positions BYTEA;
@@ -0,0 +1,20 @@
+-- V7__site_stats.sql
+-- Счётчики страниц и лемм сайта для /api/statistics. Во время индексации они ведутся в памяти
+-- (см. SiteStatsServiceImpl) и записываются сюда на контрольных точках и по окончании обхода.
+-- Для уже проиндексированных сайтов счётчики заполняются по текущим данным.
+
+CREATE TABLE IF NOT EXISTS site_stats (
+    site_id INTEGER PRIMARY KEY,
+    pages INTEGER NOT NULL,
+    lemmas INTEGER NOT NULL,
+    updated_at TIMESTAMP NOT NULL,
+    FOREIGN KEY (site_id) REFERENCES site(id) ON DELETE CASCADE
+);
+
+INSERT INTO site_stats (site_id, pages, lemmas, updated_at)
+SELECT s.id,
+       (SELECT COUNT(*) FROM page p WHERE p.site_id = s.id),
+       (SELECT COUNT(*) FROM lemma l WHERE l.site_id = s.id),
+       NOW()
+FROM site s
+ON CONFLICT (site_id) DO NOTHING;
@@ -0,0 +1,98 @@
+package searchengine.service.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Очередь обхода восстанавливается из снимка и журнала в том же состоянии: адреса, вытесненные
+ * из заполненной очереди, не возвращаются, и бюджет страниц не превышается.
+ */
+class CrawlFrontierTest {
+    private static final String SITE = "https://example.com/";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void evictedUrlIsNotRestoredFromSnapshotAndJournal() throws IOException {
+        CrawlFrontier frontier = new CrawlFrontier(3, 5);
+        frontier.add(SITE + "a", 2, 0.0);
+        frontier.add(SITE + "b", 2, 0.0);
+        frontier.add(SITE + "c", 2, 0.0);
+        Path snapshot = directory.resolve("site.snapshot");
+        frontier.save(snapshot);
+        //очередь заполнена: адрес с меньшей глубиной вытесняет худший, c
+        assertThat(frontier.add(SITE + "d", 1, 0.0)).isTrue();
+        Path journal = directory.resolve("site.journal");
+        Files.write(journal, frontier.drainJournal());
+
+        CrawlFrontier restored = new CrawlFrontier(3, 5);
+        restored.load(snapshot);
+        restored.replayJournal(journal);
+
+        assertThat(restored.getQueueSize()).isEqualTo(3);
+        assertThat(drain(restored)).containsExactly(SITE + "d", SITE + "a", SITE + "b");
+    }
+
+    @Test
+    void evictedUrlIsNotRestoredFromJournalOnly() throws IOException {
+        CrawlFrontier frontier = new CrawlFrontier(2, 5);
+        frontier.add(SITE + "a", 3, 0.0);
+        frontier.add(SITE + "b", 3, 0.0);
+        frontier.add(SITE + "c", 1, 0.0);
+        frontier.add(SITE + "d", 2, 0.0);
+        Path journal = directory.resolve("site.journal");
+        Files.write(journal, frontier.drainJournal());
+
+        CrawlFrontier restored = new CrawlFrontier(2, 5);
+        restored.replayJournal(journal);
+
+        assertThat(restored.getQueueSize()).isEqualTo(2);
+        assertThat(drain(restored)).containsExactly(SITE + "c", SITE + "d");
+    }
+
+    @Test
+    void evictedUrlAddedAgainIsRestored() throws Exception {
+        CrawlFrontier frontier = new CrawlFrontier(2, 5);
+        frontier.add(SITE + "a", 1, 0.0);
+        frontier.add(SITE + "b", 3, 0.0);
+        frontier.add(SITE + "c", 2, 0.0);
+        //a посещён, место освободилось, и вытесненный b добавлен снова
+        AtomicBoolean processing = new AtomicBoolean(true);
+        CrawlFrontier.FrontierUrl first = frontier.next(processing);
+        frontier.done(first);
+        assertThat(frontier.add(SITE + "b", 3, 0.0)).isTrue();
+        Path journal = directory.resolve("site.journal");
+        Files.write(journal, frontier.drainJournal());
+
+        CrawlFrontier restored = new CrawlFrontier(2, 5);
+        restored.replayJournal(journal);
+
+        assertThat(restored.getVisitedCount()).isEqualTo(1);
+        assertThat(restored.getQueueSize()).isEqualTo(2);
+    }
+
+    private List<String> drain(CrawlFrontier frontier) {
+        List<String> urls = new ArrayList<>();
+        AtomicBoolean processing = new AtomicBoolean(true);
+        try {
+            CrawlFrontier.FrontierUrl url;
+            while ((url = frontier.next(processing)) != null) {
+                urls.add(url.getUrl());
+                frontier.done(url);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        return urls;
+    }
+}
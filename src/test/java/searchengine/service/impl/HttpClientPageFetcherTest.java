@@ -0,0 +1,180 @@
+package searchengine.service.impl;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import searchengine.config.ConfigConnection;
+import searchengine.config.CrawlerConfig;
+import searchengine.dto.index.FetchResult;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Загрузка страниц с локального HTTP-сервера: запросы к сайту выполняются параллельно,
+ * последовательные запросы идут по одному keep-alive соединению, а сжатый ответ больше
+ * лимита распаковывается частично.
+ */
+class HttpClientPageFetcherTest {
+    private static final int PARALLEL_REQUESTS = 8;
+    private static final byte[] HTML = "<html><body>Страница</body></html>".getBytes(StandardCharsets.UTF_8);
+    private static final int MAX_BODY_SIZE = 4096;
+    //Плохо сжимаемый HTML: сжатое тело больше MAX_BODY_SIZE и обрезается при загрузке
+    private static final byte[] LARGE_HTML = createLargeHtml();
+    private static final byte[] GZIPPED_LARGE_HTML = gzip(LARGE_HTML);
+
+    private HttpServer server;
+    private String baseUrl;
+    private HttpClientPageFetcher fetcher;
+    //Порты клиента, с которых пришли запросы: один порт - одно TCP-соединение
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final CountDownLatch allArrived = new CountDownLatch(PARALLEL_REQUESTS);
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        fetcher = createFetcher(new CrawlerConfig().getMaxBodySize());
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    //Страницы /slow отвечают, только когда на сервере одновременно находятся все PARALLEL_REQUESTS запросов
+    private void handle(HttpExchange exchange) throws IOException {
+        clientPorts.add(exchange.getRemoteAddress().getPort());
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        try {
+            if (exchange.getRequestURI().getPath().startsWith("/slow")) {
+                allArrived.countDown();
+                allArrived.await(5, TimeUnit.SECONDS);
+            }
+            String path = exchange.getRequestURI().getPath();
+            byte[] body = HTML;
+            if (path.startsWith("/gzip")) {
+                body = GZIPPED_LARGE_HTML;
+                exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            } else if (path.startsWith("/broken-gzip")) {
+                body = HTML;
+                exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            }
+            exchange.getResponseHeaders().add("Content-Type", "text/html; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            } catch (IOException ex) {
+                //клиент закрыл соединение, прочитав тело до лимита
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    @Test
+    void requestsToSiteRunInParallel() throws Exception {
+        List<CompletableFuture<FetchResult>> futures = new ArrayList<>();
+        for (int i = 0; i < PARALLEL_REQUESTS; i++) {
+            futures.add(fetcher.fetchAsync(baseUrl + "/slow/" + i));
+        }
+        for (CompletableFuture<FetchResult> future : futures) {
+            FetchResult result = future.get(10, TimeUnit.SECONDS);
+            assertThat(result.getStatusCode()).isEqualTo(200);
+            assertThat(new String(result.getBody(), StandardCharsets.UTF_8)).contains("Страница");
+        }
+        assertThat(allArrived.getCount()).isZero();
+        assertThat(maxInFlight.get()).isEqualTo(PARALLEL_REQUESTS);
+    }
+
+    @Test
+    void sequentialRequestsReuseKeepAliveConnection() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            assertThat(fetcher.fetch(baseUrl + "/page/" + i).getStatusCode()).isEqualTo(200);
+        }
+        assertThat(clientPorts).hasSize(1);
+    }
+
+    @Test
+    void gzipBodyOverLimitIsDecompressedPartially() throws Exception {
+        FetchResult result = createFetcher(MAX_BODY_SIZE).fetch(baseUrl + "/gzip");
+
+        assertThat(GZIPPED_LARGE_HTML.length).isGreaterThan(MAX_BODY_SIZE);
+        assertThat(result.isTruncated()).isTrue();
+        assertThat(result.getBody()).isNotEmpty().hasSizeLessThanOrEqualTo(MAX_BODY_SIZE);
+        //тело - начало исходного HTML, а не сжатые байты
+        assertThat(result.getBody()).isEqualTo(Arrays.copyOf(LARGE_HTML, result.getBody().length));
+    }
+
+    @Test
+    void gzipBodyWithinLimitIsDecompressedCompletely() throws Exception {
+        FetchResult result = createFetcher(LARGE_HTML.length + GZIPPED_LARGE_HTML.length).fetch(baseUrl + "/gzip");
+
+        assertThat(result.isTruncated()).isFalse();
+        assertThat(result.getBody()).isEqualTo(LARGE_HTML);
+    }
+
+    @Test
+    void undecodableGzipBodyFailsFetch() {
+        assertThatThrownBy(() -> fetcher.fetch(baseUrl + "/broken-gzip"))
+                .isInstanceOf(IOException.class);
+    }
+
+    private HttpClientPageFetcher createFetcher(int maxBodySize) {
+        ConfigConnection configConnection = new ConfigConnection();
+        configConnection.setUserAgent("test");
+        configConnection.setReferer("http://localhost");
+        configConnection.setTimeout(10_000);
+        CrawlerConfig crawlerConfig = new CrawlerConfig();
+        crawlerConfig.setMaxBodySize(maxBodySize);
+        return new HttpClientPageFetcher(configConnection, crawlerConfig, new SimpleMeterRegistry());
+    }
+
+    private static byte[] createLargeHtml() {
+        Random random = new Random(42);
+        StringBuilder html = new StringBuilder("<html><body>");
+        while (html.length() < 200_000) {
+            html.append("<p>");
+            for (int i = 0; i < 40; i++) {
+                html.append((char) ('а' + random.nextInt(32)));
+            }
+            html.append("</p>");
+        }
+        return html.append("</body></html>").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] gzip(byte[] content) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(output)) {
+            gzip.write(content);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,74 @@
+package searchengine.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Лемматизация смешанного русско-английского текста: слово уходит в морфологию своего алфавита,
+ * служебные части речи отбрасываются, позиции лемм совпадают с порядком слов в тексте.
+ */
+class LemmaServiceImplTest {
+    private final LemmaServiceImpl lemmaService = new LemmaServiceImpl(new SimpleMeterRegistry());
+
+    @Test
+    void wordsReachMorphologyOfTheirAlphabet() {
+        Map<String, Integer> lemmas = lemmaService.getLemmasFromPlainText(
+                "Кошки любят milk, а Dogs любят кошек и 2024 bones");
+
+        //кириллица разбирается русской морфологией, латиница - английской
+        assertThat(lemmas).containsEntry("кошка", 2)
+                .containsEntry("любить", 2)
+                .containsEntry("milk", 1)
+                .containsEntry("dog", 1)
+                .containsEntry("bone", 1);
+        //числа не являются словами, однобуквенные слова не индексируются
+        assertThat(lemmas.keySet()).noneMatch(lemma -> lemma.chars().anyMatch(Character::isDigit))
+                .doesNotContain("а", "и");
+    }
+
+    @Test
+    void mixedAlphabetWordsAreNotIndexed() {
+        assertThat(lemmaService.getLemmaByWord("суперcat")).isEmpty();
+        assertThat(lemmaService.getLemmaByWord("catкот")).isEmpty();
+        assertThat(lemmaService.getLemmasFromPlainText("суперcat")).isEmpty();
+    }
+
+    @Test
+    void functionWordsAreFiltered() {
+        //СОЮЗ, ПРЕДЛ
+        assertThat(lemmaService.getLemmaByWord("или")).isEmpty();
+        assertThat(lemmaService.getLemmaByWord("на")).isEmpty();
+        //CONJ, PREP, ARTICLE
+        assertThat(lemmaService.getLemmaByWord("and")).isEmpty();
+        assertThat(lemmaService.getLemmaByWord("with")).isEmpty();
+        assertThat(lemmaService.getLemmaByWord("the")).isEmpty();
+        //знаменательные слова остаются
+        assertThat(lemmaService.getLemmaByWord("леса")).isEqualTo("лес");
+        assertThat(lemmaService.getLemmaByWord("forests")).isEqualTo("forest");
+    }
+
+    @Test
+    void positionsFollowWordOrder() {
+        //слово с дефисом - одно слово, число - разделитель, служебные слова занимают позицию
+        Map<String, List<Integer>> positions = lemmaService.getLemmaPositions(
+                "Кот-баюн спит 2 часа, and cats sleep; кошки спят");
+
+        assertThat(positions).containsEntry("спать", List.of(1, 7))
+                .containsEntry("час", List.of(2))
+                .containsEntry("cat", List.of(4))
+                .containsEntry("sleep", List.of(5))
+                .containsEntry("кошка", List.of(6))
+                .doesNotContainKey("and");
+    }
+
+    @Test
+    void lemmaIsCaseInsensitive() {
+        assertThat(lemmaService.getLemmaByWord("КОШКИ")).isEqualTo("кошка");
+        assertThat(lemmaService.getLemmaByWord("Cats")).isEqualTo("cat");
+    }
+}
@@ -0,0 +1,106 @@
+package searchengine.service.impl;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import searchengine.model.Index;
+import searchengine.model.Lemma;
+import searchengine.model.Page;
+import searchengine.model.Site;
+import searchengine.model.Status;
+import searchengine.repository.IndexRepository;
+import searchengine.repository.LemmaRepository;
+import searchengine.repository.PageRepository;
+import searchengine.repository.SiteRepository;
+import searchengine.service.PageIndexerService;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Число JDBC-запросов при сохранении индекса страницы: строки search_index должны уходить
+ * пакетами по hibernate.jdbc.batch_size, а не отдельным INSERT на строку.
+ */
+@Testcontainers
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class PageIndexerServiceImplTest {
+    private static final String TEXT = "Городская библиотека открыла новый читальный зал для студентов и школьников. "
+            + "В зале собраны редкие книги по истории архитектуры, живописи, музыки и театра. "
+            + "Посетители могут заказать старинные рукописи, журналы, газеты и карты губернии. "
+            + "Каждую субботу библиотекари проводят экскурсии, лекции и встречи с писателями, "
+            + "а летом во дворе работает открытая веранда с удобными креслами и бесплатным чаем.";
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @Autowired
+    private PageIndexerService pageIndexerService;
+    @Autowired
+    private SiteRepository siteRepository;
+    @Autowired
+    private PageRepository pageRepository;
+    @Autowired
+    private LemmaRepository lemmaRepository;
+    @Autowired
+    private IndexRepository indexRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private Site site;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        site = siteRepository.save(new Site(Status.INDEXING, Timestamp.valueOf(LocalDateTime.now()), null,
+                "https://" + UUID.randomUUID() + ".example/", "Тестовый сайт"));
+    }
+
+    @Test
+    void indexRowsAreInsertedInBatches() {
+        Page page = pageRepository.save(new Page(site, "/batch", 200, ""));
+        List<Lemma> lemmas = lemmaRepository.saveAll(IntStream.range(0, 120)
+                .mapToObj(i -> new Lemma("лемма" + i, 1, site))
+                .toList());
+        List<Index> indexes = lemmas.stream().map(lemma -> new Index(page, lemma, 1)).toList();
+
+        statistics.clear();
+        indexRepository.saveAll(indexes);
+
+        assertThat(statistics.getEntityStatistics(Index.class.getName()).getInsertCount()).isEqualTo(120);
+        //120 строк при batch_size 50 - три пакета INSERT и несколько обращений к последовательности
+        //(allocationSize 50) вместо 120 отдельных INSERT
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(8);
+    }
+
+    @Test
+    void indexingPageBatchesIndexRows() {
+        Page page = new Page(site, "/text", 200, "<p>" + TEXT + "</p>");
+        page.setPageText(TEXT);
+        pageRepository.save(page);
+
+        statistics.clear();
+        pageIndexerService.index(page);
+
+        long indexRows = statistics.getEntityStatistics(Index.class.getName()).getInsertCount();
+        long newLemmas = statistics.getEntityStatistics(Lemma.class.getName()).getInsertCount();
+        assertThat(indexRows).isGreaterThanOrEqualTo(30).isEqualTo(newLemmas);
+        //Каждая новая лемма пока стоит двух запросов (поиск и отдельный INSERT), а строки индекса
+        //сохраняются пакетами: без пакетов запросов было бы не меньше 2 * newLemmas + indexRows
+        assertThat(statistics.getPrepareStatementCount()).isLessThan(2 * newLemmas + indexRows);
+    }
+}
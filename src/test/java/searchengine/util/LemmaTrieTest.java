@@ -0,0 +1,67 @@
+package searchengine.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LemmaTrieTest {
+    private final LemmaTrie trie = LemmaTrie.of(Map.of(
+            "кот", 5,
+            "котёнок", 12,
+            "который", 40,
+            "кошка", 8,
+            "ток", 3,
+            "дом", 20,
+            "домик", 2));
+
+    @Test
+    void containsOnlyWholeWords() {
+        assertThat(trie.size()).isEqualTo(7);
+        assertThat(trie.contains("кот")).isTrue();
+        assertThat(trie.contains("ко")).isFalse();
+        assertThat(trie.contains("котик")).isFalse();
+    }
+
+    @Test
+    void completesPrefixByDescendingWeight() {
+        assertThat(trie.complete("ко", 10)).containsExactly("который", "котёнок", "кошка", "кот");
+        assertThat(trie.complete("ко", 2)).containsExactly("который", "котёнок");
+        assertThat(trie.complete("дом", 10)).containsExactly("дом", "домик");
+    }
+
+    @Test
+    void completesNothingForUnknownPrefixOrZeroLimit() {
+        assertThat(trie.complete("лес", 10)).isEmpty();
+        assertThat(trie.complete("ко", 0)).isEmpty();
+    }
+
+    @Test
+    void repeatedWordKeepsMaxWeight() {
+        trie.add("кот", 100);
+        trie.add("кот", 1);
+        assertThat(trie.size()).isEqualTo(7);
+        assertThat(trie.complete("ко", 1)).containsExactly("кот");
+    }
+
+    @Test
+    void fuzzyFindsWordsWithinLevenshteinDistance() {
+        //замена, вставка и удаление одной буквы
+        assertThat(trie.fuzzy("кит", 1, 10)).containsExactly("кот");
+        assertThat(trie.fuzzy("кошкка", 1, 10)).containsExactly("кошка");
+        assertThat(trie.fuzzy("дм", 1, 10)).containsExactly("дом");
+    }
+
+    @Test
+    void fuzzyOrdersByDistanceThenWeight() {
+        assertThat(trie.fuzzy("дом", 2, 10)).containsExactly("дом", "кот", "ток", "домик");
+        assertThat(trie.fuzzy("кто", 2, 10)).containsExactly("кот", "ток");
+        assertThat(trie.fuzzy("дом", 2, 1)).containsExactly("дом");
+    }
+
+    @Test
+    void fuzzyRejectsWordsBeyondDistance() {
+        assertThat(trie.fuzzy("самолёт", 2, 10)).isEmpty();
+    }
+}
@@ -0,0 +1,70 @@
+package searchengine.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.OptionalInt;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SimHashIndexTest {
+    private static final long HASH = 0x1234_5678_9ABC_DEF0L;
+
+    private final SimHashIndex index = new SimHashIndex(3);
+
+    @Test
+    void findsCandidateThroughEachSingleMatchingBand() {
+        index.add(HASH, 1);
+        for (int band = 0; band < 4; band++) {
+            //по одному изменённому биту в трёх других полосах: совпадает только полоса band
+            long near = HASH;
+            for (int other = 0; other < 4; other++) {
+                if (other != band) {
+                    near ^= 1L << (other * 16 + 5);
+                }
+            }
+            assertThat(SimHash.distance(HASH, near)).isEqualTo(3);
+            assertThat(index.findNear(near)).hasValue(1);
+        }
+    }
+
+    @Test
+    void rejectsCandidateFartherThanMaxDistance() {
+        index.add(HASH, 1);
+        //полоса 0 совпадает, но отпечатки отличаются в 4 битах
+        long far = HASH ^ (1L << 16) ^ (1L << 32) ^ (1L << 48) ^ (1L << 49);
+
+        assertThat(SimHash.distance(HASH, far)).isEqualTo(4);
+        assertThat(index.findNear(far)).isEmpty();
+    }
+
+    @Test
+    void findsNothingInEmptyIndex() {
+        assertThat(index.findNear(HASH)).isEqualTo(OptionalInt.empty());
+    }
+
+    @Test
+    void removedPageCanBeAddedAgainWithNewHash() {
+        long refreshed = ~HASH;
+        index.add(HASH, 7);
+        index.remove(7);
+
+        assertThat(index.size()).isZero();
+        assertThat(index.findNear(HASH)).isEmpty();
+
+        index.add(refreshed, 7);
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.findNear(refreshed)).hasValue(7);
+        assertThat(index.findNear(HASH)).isEmpty();
+    }
+
+    @Test
+    void addingPageAgainReplacesItsOldHash() {
+        long refreshed = ~HASH;
+        index.add(HASH, 7);
+        index.add(refreshed, 7);
+
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.findNear(HASH)).isEmpty();
+        assertThat(index.findNear(refreshed)).hasValue(7);
+    }
+}
@@ -0,0 +1,66 @@
+package searchengine.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SimHashTest {
+
+    @Test
+    void identicalTokenStreamsGiveSameFingerprint() {
+        List<String> tokens = List.of("лес", "ёлочка", "лес", "зима", "лето", "ёлочка", "лес");
+        Map<String, Integer> first = new LinkedHashMap<>();
+        tokens.forEach(token -> first.merge(token, 1, Integer::sum));
+        //те же слова в другом порядке
+        Map<String, Integer> second = new LinkedHashMap<>();
+        for (int i = tokens.size() - 1; i >= 0; i--) {
+            second.merge(tokens.get(i), 1, Integer::sum);
+        }
+
+        assertThat(SimHash.of(second)).isEqualTo(SimHash.of(first));
+    }
+
+    @Test
+    void smallEditChangesAtMostThreeBits() {
+        Map<String, Integer> page = createPage("слово");
+        long original = SimHash.of(page);
+
+        //слово повторено ещё раз
+        Map<String, Integer> repeated = new HashMap<>(page);
+        repeated.merge("слово7", 1, Integer::sum);
+        //добавлено одно новое слово
+        Map<String, Integer> added = new HashMap<>(page);
+        added.put("опечатка", 1);
+
+        assertThat(SimHash.distance(original, SimHash.of(repeated))).isLessThanOrEqualTo(3);
+        assertThat(SimHash.distance(original, SimHash.of(added))).isLessThanOrEqualTo(3);
+    }
+
+    @Test
+    void differentPagesAreFarApart() {
+        long first = SimHash.of(createPage("слово"));
+        long second = SimHash.of(createPage("другое"));
+
+        assertThat(SimHash.distance(first, second)).isGreaterThan(3);
+    }
+
+    @Test
+    void distanceCountsDifferentBits() {
+        assertThat(SimHash.distance(0L, 0L)).isZero();
+        assertThat(SimHash.distance(0b1011L, 0b0010L)).isEqualTo(2);
+        assertThat(SimHash.distance(0L, -1L)).isEqualTo(64);
+    }
+
+    private Map<String, Integer> createPage(String prefix) {
+        Map<String, Integer> page = new HashMap<>();
+        for (int i = 0; i < 200; i++) {
+            page.put(prefix + i, i % 5 + 1);
+        }
+        return page;
+    }
+}
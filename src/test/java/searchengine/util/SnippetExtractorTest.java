@@ -0,0 +1,75 @@
+package searchengine.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SnippetExtractorTest {
+    //Лемма слова в тестах - само слово в нижнем регистре
+    private static final Function<String, String> LEMMATIZER = word -> word.toLowerCase(Locale.ROOT);
+
+    private final SnippetExtractor extractor = new SnippetExtractor(List.of("кот", "пёс"), LEMMATIZER, 40);
+
+    @Test
+    void choosesWindowWithMostDistinctLemmas() {
+        SnippetExtractor.SnippetResult result = extractor.extract(
+                "Кот спал долго, потом кот ушёл гулять далеко в поле, а там пёс встретил кота и пёс залаял.");
+
+        assertThat(result.getSnippet()).isEqualTo("...<b>кот</b> ушёл гулять далеко в поле, а там <b>пёс</b>...");
+        assertThat(result.getDistinctCount()).isEqualTo(2);
+        assertThat(result.getMatchCount()).isEqualTo(2);
+    }
+
+    @Test
+    void contextIsCutAtWordBoundariesWithinMaxLength() {
+        SnippetExtractor.SnippetResult result = extractor.extract("Начало длинного предложения, в котором много слов "
+                + "до совпадения, затем кот и пёс, а после них ещё очень много слов до самого конца предложения.");
+
+        assertThat(result.getSnippet()).isEqualTo("...затем <b>кот</b> и <b>пёс</b>, а после них ещё очень...");
+        String text = result.getSnippet().replace("<b>", "").replace("</b>", "").replace("...", "");
+        assertThat(text).hasSizeLessThanOrEqualTo(40);
+    }
+
+    @Test
+    void keepsOriginalPunctuation() {
+        assertThat(extractor.extract("Кот, пёс; и «мышь»!").getSnippet())
+                .isEqualTo("<b>Кот</b>, <b>пёс</b>; и «мышь»!");
+    }
+
+    @Test
+    void escapesHtmlInPlainText() {
+        assertThat(extractor.extract("Условие a < b & кот > c выполнено").getSnippet())
+                .isEqualTo("Условие a &lt; b &amp; <b>кот</b> &gt; c выполнено");
+    }
+
+    @Test
+    void truncatesMatchedWordLongerThanMaxLength() {
+        String longWord = "а".repeat(21);
+        SnippetExtractor longWordExtractor = new SnippetExtractor(List.of(longWord), LEMMATIZER, 10);
+
+        assertThat(longWordExtractor.extract(longWord).getSnippet()).isEqualTo("<b>" + "а".repeat(10) + "</b>...");
+        SnippetExtractor.SnippetResult inSentence = longWordExtractor.extract("слово " + longWord + " слово");
+        assertThat(inSentence.getSnippet()).isEqualTo("...<b>" + "а".repeat(10) + "</b>...");
+        assertThat(inSentence.getMatchCount()).isEqualTo(1);
+    }
+
+    @Test
+    void extractBestChoosesSentenceWithMostLemmas() {
+        SnippetExtractor.SnippetResult result = extractor.extractBest(
+                List.of("Здесь только кот.", "Здесь кот и пёс рядом.", "Нет совпадений."));
+
+        assertThat(result.getSnippet()).isEqualTo("Здесь <b>кот</b> и <b>пёс</b> рядом.");
+    }
+
+    @Test
+    void sentenceWithoutMatchesGivesEmptySnippet() {
+        SnippetExtractor.SnippetResult result = extractor.extract("Нет совпадений.");
+
+        assertThat(result.hasMatches()).isFalse();
+        assertThat(result.getSnippet()).isEmpty();
+    }
+}
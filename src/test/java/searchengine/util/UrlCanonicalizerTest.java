@@ -0,0 +1,72 @@
+package searchengine.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UrlCanonicalizerTest {
+    private final UrlCanonicalizer canonicalizer =
+            new UrlCanonicalizer("https://example.com/", List.of("utm_*", "gclid"));
+
+    @Test
+    void foldsSchemeWwwAndDefaultPortToSiteAddress() {
+        assertThat(canonicalizer.canonicalize("http://www.Example.com/news")).isEqualTo("https://example.com/news");
+        assertThat(canonicalizer.canonicalize("HTTPS://EXAMPLE.COM:443/news")).isEqualTo("https://example.com/news");
+        assertThat(canonicalizer.canonicalize("https://www.example.com:443")).isEqualTo("https://example.com/");
+    }
+
+    @Test
+    void keepsOtherHostsAndPorts() {
+        assertThat(canonicalizer.canonicalize("http://other.com:80/a")).isEqualTo("http://other.com/a");
+        assertThat(canonicalizer.canonicalize("https://example.com:8443/a")).isEqualTo("https://example.com:8443/a");
+    }
+
+    @Test
+    void removesDotSegmentsAndRepeatedSlashes() {
+        assertThat(canonicalizer.canonicalize("https://example.com/a/./b/../c")).isEqualTo("https://example.com/a/c");
+        assertThat(canonicalizer.canonicalize("https://example.com//a///b")).isEqualTo("https://example.com/a/b");
+        assertThat(canonicalizer.canonicalize("https://example.com/../..")).isEqualTo("https://example.com/");
+    }
+
+    @Test
+    void removesTrailingSlashExceptForRoot() {
+        assertThat(canonicalizer.canonicalize("https://example.com/path/")).isEqualTo("https://example.com/path");
+        assertThat(canonicalizer.canonicalize("https://example.com/")).isEqualTo("https://example.com/");
+        assertThat(canonicalizer.canonicalize("https://example.com")).isEqualTo("https://example.com/");
+    }
+
+    @Test
+    void upperCasesEscapesButKeepsPathCase() {
+        assertThat(canonicalizer.canonicalize("https://example.com/%d0%b0/Page"))
+                .isEqualTo("https://example.com/%D0%B0/Page");
+        assertThat(canonicalizer.canonicalize("https://example.com/a?q=%e2%82%ac"))
+                .isEqualTo("https://example.com/a?q=%E2%82%AC");
+    }
+
+    @Test
+    void stripsTrackingParamsSortsTheRestAndDropsFragment() {
+        assertThat(canonicalizer.canonicalize("https://example.com/a?utm_source=x&b=2&UTM_Medium=y&a=1&gclid=z#top"))
+                .isEqualTo("https://example.com/a?a=1&b=2");
+        assertThat(canonicalizer.canonicalize("https://example.com/a?utm_campaign=x"))
+                .isEqualTo("https://example.com/a");
+    }
+
+    @Test
+    void rejectsNonHttpAndMalformedLinks() {
+        assertThat(canonicalizer.canonicalize("mailto:info@example.com")).isNull();
+        assertThat(canonicalizer.canonicalize("javascript:void(0)")).isNull();
+        assertThat(canonicalizer.canonicalize("https://example.com/a b")).isNull();
+        assertThat(canonicalizer.canonicalize(" ")).isNull();
+    }
+
+    @Test
+    void internalLinksAreSitePagesWithoutQueryOrFileExtension() {
+        assertThat(canonicalizer.isInternal("https://example.com/news")).isTrue();
+        assertThat(canonicalizer.isInternal("https://example.com/")).isFalse();
+        assertThat(canonicalizer.isInternal("https://example.com/a?b=1")).isFalse();
+        assertThat(canonicalizer.isInternal("https://example.com/file.pdf")).isFalse();
+        assertThat(canonicalizer.isInternal("https://other.com/news")).isFalse();
+    }
+}